@@ -23,6 +23,7 @@ import java.awt.event.MouseEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.IOException;
+import java.util.Map;
 
 import javax.imageio.ImageIO;
 import javax.swing.Action;
@@ -68,6 +69,7 @@ import com.alternatecomputing.jschnizzle.action.EditDiagramAction;
 import com.alternatecomputing.jschnizzle.action.ExitAction;
 import com.alternatecomputing.jschnizzle.action.ExportImageAction;
 import com.alternatecomputing.jschnizzle.action.OpenAction;
+import com.alternatecomputing.jschnizzle.action.RerenderAllAction;
 import com.alternatecomputing.jschnizzle.action.SaveAction;
 import com.alternatecomputing.jschnizzle.action.SaveAsAction;
 import com.alternatecomputing.jschnizzle.event.Dispatcher;
@@ -77,8 +79,7 @@ import com.alternatecomputing.jschnizzle.model.ApplicationModel;
 import com.alternatecomputing.jschnizzle.model.Diagram;
 import com.alternatecomputing.jschnizzle.model.DiagramType;
 import com.alternatecomputing.jschnizzle.renderer.RendererFactory;
-import com.alternatecomputing.jschnizzle.renderer.WebSequenceRenderer;
-import com.alternatecomputing.jschnizzle.renderer.YUMLRenderer;
+import com.alternatecomputing.jschnizzle.renderer.util.RenderCache;
 import com.alternatecomputing.jschnizzle.ui.ImagePanel;
 import com.alternatecomputing.jschnizzle.util.UIUtils;
 import com.jgoodies.forms.layout.CellConstraints;
@@ -104,6 +105,7 @@ public class JSchnizzle implements Listener {
 	private SaveAsAction saveAsAction;
 	private CopyToClipboardAction copyToClipboardAction;
 	private ExportImageAction exportImageAction;
+	private RerenderAllAction rerenderAllAction;
 	private JPopupMenu activityPopupMenu;
 	private JPopupMenu classPopupMenu;
 	private JPopupMenu useCasePopupMenu;
@@ -130,8 +132,8 @@ public class JSchnizzle implements Listener {
 	}
 
 	private void registerRenderers() {
-		RendererFactory.registerRenderer(new YUMLRenderer());
-		RendererFactory.registerRenderer(new WebSequenceRenderer());
+		// renderers and their priorities come from the RendererProvider service declarations
+		RendererFactory.loadRenderers(RenderCache.getInstance());
 	}
 
 	private void createPopupMenus() {
@@ -163,6 +165,7 @@ public class JSchnizzle implements Listener {
 		copyToClipboardAction.setEnabled(false);
 		exportImageAction = new ExportImageAction(frame);
 		exportImageAction.setEnabled(false);
+		rerenderAllAction = new RerenderAllAction(applicationModel, frame);
 	}
 
 	private void initializeLookAndFeel() {
@@ -200,6 +203,7 @@ public class JSchnizzle implements Listener {
 		menuBar.add(fileMenu);
 		JMenu editMenu = new JMenu("Edit");
 		editMenu.add(new JMenuItem(editDiagramAction));
+		editMenu.add(new JMenuItem(rerenderAllAction));
 		editMenu.addSeparator();
 		editMenu.add(new JMenuItem(copyToClipboardAction));
 		editMenu.addSeparator();
@@ -548,14 +552,34 @@ public class JSchnizzle implements Listener {
 									refreshSelectedDiagram(DiagramType.Sequence, mainPanel, sequenceScriptsList.getSelectedIndex());
 									break;
 							}
-							applicationModel.markModelDirty();
+							applicationModel.markDiagramDirty((Diagram) eventPayload);
+							break;
+						case DiagramsModified:
+							// apply a whole batch of renders at once, refreshing the displayed diagram only once
+							@SuppressWarnings("unchecked")
+							Map<Diagram, Diagram> renderedDiagrams = (Map<Diagram, Diagram>) eventPayload;
+							for (Map.Entry<Diagram, Diagram> entry : renderedDiagrams.entrySet()) {
+								entry.getKey().nonBeanImage(entry.getValue().nonBeanImage());
+								entry.getKey().copyEncodedImage(entry.getValue());
+								applicationModel.markDiagramDirty(entry.getKey());
+							}
+							Diagram displayedDiagram = imagePanel.getDiagram();
+							if (displayedDiagram != null && renderedDiagrams.containsKey(displayedDiagram)) {
+								imagePanel.setDiagram(displayedDiagram);
+								mainPanel.revalidate();
+							}
 							break;
 						case ProgressCompleted:
 							progressBar.setIndeterminate(false);
+							progressBar.setValue(0);
 							break;
 						case ProgressStarted:
 							progressBar.setIndeterminate(true);
 							break;
+						case ProgressUpdated:
+							progressBar.setIndeterminate(false);
+							progressBar.setValue(((Integer) eventPayload).intValue());
+							break;
 						case SelectDiagram:
 							switch (((Diagram) eventPayload).getType()) {
 								case Activity:
@@ -580,7 +604,14 @@ public class JSchnizzle implements Listener {
 								frame.setTitle("JSchnizzle - " + eventPayload);
 							}
 							applicationModel.setFileName((String) eventPayload);
-							applicationModel.markModelClean();
+							break;
+						case ModelClean:
+							// a save only covers the changes made before it started
+							if (eventPayload == null) {
+								applicationModel.markModelClean();
+							} else {
+								applicationModel.markModelSaved(((Integer) eventPayload).intValue());
+							}
 							break;
 						default:
 							break;
@@ -66,11 +66,14 @@ public class CloseAction extends AbstractFileAction {
 				return;
 			}
 		}
+		// the file name of a save still in progress must not outlive the close
+		SaveAction.awaitPendingSaves();
 		try {
 			Dispatcher.dispatchEvent(new JSEvent(EventType.ProgressStarted, null, null));
 			Dispatcher.dispatchEvent(new JSEvent(EventType.DiagramDeleteAll, this, null));
 			LOGGER.info("File '" + applicationModel.getFileName() + "' closed.");
 			Dispatcher.dispatchEvent(new JSEvent(EventType.FileNameChanged, this, null));
+			Dispatcher.dispatchEvent(new JSEvent(EventType.ModelClean, this, null));
 		} finally {
 			Dispatcher.dispatchEvent(new JSEvent(EventType.ProgressCompleted, null, null));
 		}
@@ -56,7 +56,7 @@ public class CreateActivityDiagramAction extends AbstractAction {
 		JXHeader header = new JXHeader("New Activity Diagram", "Enter details for the new activity diagram.");
 		JPanel panel = UIUtils.createDiagramPanel(header, diagram, dialog, true);
 		dialog.add(panel);
-		dialog.setSize(600, 400);
+		dialog.setSize(900, 450);
 		UIUtils.centerComponent(dialog, owner);
 		dialog.setVisible(true);
 	}
@@ -56,7 +56,7 @@ public class CreateClassDiagramAction extends AbstractAction {
 		JXHeader header = new JXHeader("New Class Diagram", "Enter details for the new class diagram.");
 		JPanel panel = UIUtils.createDiagramPanel(header, diagram, dialog, true);
 		dialog.add(panel);
-		dialog.setSize(600, 400);
+		dialog.setSize(900, 450);
 		UIUtils.centerComponent(dialog, owner);
 		dialog.setVisible(true);
 	}
@@ -54,7 +54,7 @@ public class EditDiagramAction extends AbstractAction {
 		JXHeader header = new JXHeader("Edit " + diagram.getType() + " Diagram", "Enter updated details for this " + diagram.getType() + " diagram.");
 		JPanel panel = UIUtils.createDiagramPanel(header, diagram, dialog, false);
 		dialog.add(panel);
-		dialog.setSize(600, 400);
+		dialog.setSize(900, 450);
 		UIUtils.centerComponent(dialog, owner);
 		dialog.setVisible(true);
 	}
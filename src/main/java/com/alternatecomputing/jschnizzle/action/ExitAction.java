@@ -73,6 +73,7 @@ public class ExitAction extends AbstractAction {
 		}
 		int n = JOptionPane.showConfirmDialog(parent, "Are you sure you would like to exit?", "Exit?", JOptionPane.YES_NO_OPTION);
 		if (n == JOptionPane.YES_OPTION) {
+			SaveAction.awaitPendingSaves();
 			LOGGER.info("JSchnizzle shut down.");
 			System.exit(0);
 		}
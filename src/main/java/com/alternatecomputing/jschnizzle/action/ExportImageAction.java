@@ -15,23 +15,31 @@
  */
 package com.alternatecomputing.jschnizzle.action;
 
+import java.awt.Color;
 import java.awt.Component;
+import java.awt.Graphics2D;
+import java.awt.Image;
 import java.awt.event.ActionEvent;
-import java.io.ByteArrayInputStream;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
 import javax.swing.AbstractAction;
 import javax.swing.JFileChooser;
 import javax.swing.filechooser.FileFilter;
 
 import org.apache.batik.transcoder.TranscoderException;
-import org.apache.batik.transcoder.TranscoderInput;
-import org.apache.batik.transcoder.TranscoderOutput;
-import org.apache.batik.transcoder.image.JPEGTranscoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,6 +47,9 @@ import com.alternatecomputing.jschnizzle.event.Dispatcher;
 import com.alternatecomputing.jschnizzle.event.EventType;
 import com.alternatecomputing.jschnizzle.event.JSEvent;
 import com.alternatecomputing.jschnizzle.model.Diagram;
+import com.alternatecomputing.jschnizzle.model.ImageFormat;
+import com.alternatecomputing.jschnizzle.model.ImagePayload;
+import com.alternatecomputing.jschnizzle.renderer.util.ParsedSVG;
 
 /**
  * Action class to export a diagram image to a file
@@ -46,6 +57,13 @@ import com.alternatecomputing.jschnizzle.model.Diagram;
 public class ExportImageAction extends AbstractAction {
 	private static final long serialVersionUID = 5869985593277327191L;
 	private static final Logger LOGGER = LoggerFactory.getLogger(ExportImageAction.class);
+	private static final ExecutorService exportExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "image-exporter");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
 	private Component parent;
 	private Diagram diagram;
 
@@ -85,49 +103,113 @@ public class ExportImageAction extends AbstractAction {
 		});
 		int returnValue = chooser.showSaveDialog(parent);
 		if (returnValue == JFileChooser.APPROVE_OPTION) {
-			File file = chooser.getSelectedFile();
-			FileOutputStream fos = null;
-			try {
-				Dispatcher.dispatchEvent(new JSEvent(EventType.ProgressStarted, null, null));
-				if (!file.getName().toLowerCase().endsWith(".jpg") && !file.getName().toLowerCase().endsWith(".svg")) {
-					file = new File(file.getCanonicalPath() + ".jpg");
+			final File file = chooser.getSelectedFile();
+			final Diagram exported = diagram;
+			// the SVG of a raster render may have to be fetched first, which must not block the event dispatch thread
+			exportExecutor.execute(new Runnable() {
+				public void run() {
+					export(exported, file);
 				}
-				fos = new FileOutputStream(file);
-				if (file.getName().toLowerCase().endsWith(".jpg")) {
-					exportAsJPEG(fos);
-				} else {
-					exportAsSVG(fos);
+			});
+		}
+	}
+
+	private void export(Diagram diagram, File file) {
+		FileOutputStream fos = null;
+		boolean written = false;
+		try {
+			Dispatcher.dispatchEvent(new JSEvent(EventType.ProgressStarted, null, null));
+			if (!file.getName().toLowerCase().endsWith(".jpg") && !file.getName().toLowerCase().endsWith(".svg")) {
+				file = new File(file.getCanonicalPath() + ".jpg");
+			}
+			ImagePayload payload = diagram.nonBeanPayload();
+			if (payload == null) {
+				LOGGER.error("Diagram '" + diagram.getName() + "' image is not available for export; render it again.");
+				return;
+			}
+			if (payload.getFormat() != ImageFormat.SVG && !file.getName().toLowerCase().endsWith(".jpg")) {
+				// diagrams saved by early versions only have a raster image, which can only be exported as a JPEG
+				file = new File(file.getCanonicalPath().replaceFirst("(?i)\\.svg$", "") + ".jpg");
+				LOGGER.warn("Diagram '" + diagram.getName() + "' has no SVG image; exporting it as a JPEG image instead.");
+			}
+			fos = new FileOutputStream(file);
+			if (payload.getFormat() != ImageFormat.SVG) {
+				Image image = diagram.nonBeanImage();
+				if (image == null) {
+					throw new IOException("the image could not be decoded");
+				}
+				writeJPEG(toRGB(image), fos);
+			} else if (file.getName().toLowerCase().endsWith(".jpg")) {
+				exportAsJPEG(diagram, fos);
+			} else {
+				exportAsSVG(payload, fos);
+			}
+			fos.flush();
+			written = true;
+			LOGGER.info("Diagram '" + diagram.getName() + "' image successfully saved to file " + file.getCanonicalPath() + "'.");
+		} catch (IOException e) {
+			LOGGER.error("Error exporting diagram '" + diagram.getName() + "' image to file " + file.getAbsolutePath() + ".", e);
+		} catch (TranscoderException e) {
+			LOGGER.error("Error exporting diagram '" + diagram.getName() + "' image to file " + file.getAbsolutePath() + ".", e);
+		} finally {
+			if (fos != null) {
+				try {
+					fos.close();
+				} catch (IOException e) {
+					// ignored
 				}
-				fos.flush();
-				LOGGER.info("Diagram '" + diagram.getName() + "' image successfully saved to file " + file.getCanonicalPath() + "'.");
-			} catch (IOException e) {
-				e.printStackTrace();
-			} catch (TranscoderException e) {
-				e.printStackTrace();
-			} finally {
-				if (fos != null) {
-					try {
-						fos.close();
-					} catch (IOException e) {
-						// ignored
-					}
+				if (!written) {
+					// don't leave an empty or truncated image behind
+					file.delete();
 				}
-				Dispatcher.dispatchEvent(new JSEvent(EventType.ProgressCompleted, null, null));
 			}
+			Dispatcher.dispatchEvent(new JSEvent(EventType.ProgressCompleted, null, null));
 		}
 	}
 
-	private void exportAsJPEG(OutputStream outputStream) throws TranscoderException {
-		JPEGTranscoder t = new JPEGTranscoder();
-		t.addTranscodingHint(JPEGTranscoder.KEY_QUALITY, new Float(.8));
-		InputStream in = new ByteArrayInputStream(diagram.getEncodedImage().getBytes());
-		TranscoderInput input = new TranscoderInput(in);
-		TranscoderOutput output = new TranscoderOutput(outputStream);
-		t.transcode(input, output);
+	private void exportAsJPEG(Diagram diagram, OutputStream outputStream) throws TranscoderException, IOException {
+		// rasterize from the diagram's parsed SVG rather than parsing it again
+		ParsedSVG svg = ParsedSVG.forDiagram(diagram);
+		writeJPEG(svg.rasterize(svg.getWidth(), svg.getHeight(), BufferedImage.TYPE_INT_RGB, Color.WHITE), outputStream);
+	}
+
+	/**
+	 * draw the given image onto a white background, since JPEG has no alpha channel
+	 */
+	private static BufferedImage toRGB(Image image) {
+		BufferedImage rgb = new BufferedImage(Math.max(1, image.getWidth(null)), Math.max(1, image.getHeight(null)), BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = rgb.createGraphics();
+		try {
+			g.setColor(Color.WHITE);
+			g.fillRect(0, 0, rgb.getWidth(), rgb.getHeight());
+			g.drawImage(image, 0, 0, null);
+		} finally {
+			g.dispose();
+		}
+		return rgb;
+	}
+
+	private static void writeJPEG(BufferedImage image, OutputStream outputStream) throws IOException {
+		Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpg");
+		if (!writers.hasNext()) {
+			throw new IOException("no JPEG encoder is available");
+		}
+		ImageWriter writer = writers.next();
+		ImageOutputStream out = ImageIO.createImageOutputStream(outputStream);
+		try {
+			ImageWriteParam param = writer.getDefaultWriteParam();
+			param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+			param.setCompressionQuality(.8f);
+			writer.setOutput(out);
+			writer.write(null, new IIOImage(image, null, null), param);
+		} finally {
+			writer.dispose();
+			out.close();
+		}
 	}
 
-	private void exportAsSVG(OutputStream outputStream) throws IOException {
-		outputStream.write(diagram.getEncodedImage().getBytes());
+	private void exportAsSVG(ImagePayload payload, OutputStream outputStream) throws IOException {
+		outputStream.write(payload.getText().getBytes());
 	}
 
 	/**
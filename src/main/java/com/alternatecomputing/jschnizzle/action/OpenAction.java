@@ -18,21 +18,20 @@ package com.alternatecomputing.jschnizzle.action;
 import java.awt.Component;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.awt.image.BufferedImage;
 import java.beans.XMLDecoder;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
 
-import org.apache.batik.transcoder.TranscoderException;
-import org.apache.batik.transcoder.TranscoderInput;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,7 +40,7 @@ import com.alternatecomputing.jschnizzle.event.EventType;
 import com.alternatecomputing.jschnizzle.event.JSEvent;
 import com.alternatecomputing.jschnizzle.model.ApplicationModel;
 import com.alternatecomputing.jschnizzle.model.Diagram;
-import com.alternatecomputing.jschnizzle.renderer.util.BufferedImageTranscoder;
+import com.alternatecomputing.jschnizzle.util.ProjectArchive;
 
 /**
  * Action class to open a configuration file
@@ -49,6 +48,13 @@ import com.alternatecomputing.jschnizzle.renderer.util.BufferedImageTranscoder;
 public class OpenAction extends AbstractFileAction {
 	private static final long serialVersionUID = -5509599565459578838L;
 	private static final Logger LOGGER = LoggerFactory.getLogger(OpenAction.class);
+	private static final ExecutorService loaderExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "project-loader");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
 	private Component parent;
 	private ApplicationModel applicationModel;
 	private ActionListener saveAction;
@@ -88,37 +94,53 @@ public class OpenAction extends AbstractFileAction {
 		}
 		int returnValue = chooser.showOpenDialog(parent);
 		if (returnValue == JFileChooser.APPROVE_OPTION) {
-			File file = chooser.getSelectedFile();
-			try {
-				Dispatcher.dispatchEvent(new JSEvent(EventType.ProgressStarted, null, null));
+			final File file = chooser.getSelectedFile();
+			// load off the event dispatch thread; the diagram lists fill in as soon as the file has been decoded. Loads run
+			// one at a time, so that projects opened in quick succession replace each other rather than merge
+			loaderExecutor.execute(new Runnable() {
+				public void run() {
+					open(file);
+				}
+			});
+		}
+	}
+
+	private void open(File file) {
+		// a save still in progress may be writing the very file being opened
+		SaveAction.awaitPendingSaves();
+		try {
+			Dispatcher.dispatchEvent(new JSEvent(EventType.ProgressStarted, null, null));
+			List<Diagram> diagrams;
+			if (ProjectArchive.isArchive(file)) {
+				diagrams = ProjectArchive.read(file);
+			} else {
+				// a project saved as a single XML document; it is saved as a container from now on
 				XMLDecoder decoder = new XMLDecoder(new FileInputStream(file));
 				@SuppressWarnings("unchecked")
-				List<Diagram> diagrams = (List<Diagram>) decoder.readObject();
+				List<Diagram> decoded = (List<Diagram>) decoder.readObject();
+				diagrams = decoded;
 				decoder.close();
-				Dispatcher.dispatchEvent(new JSEvent(EventType.DiagramDeleteAll, this, null));
-				for (Iterator<Diagram> iterator = diagrams.iterator(); iterator.hasNext();) {
-					Diagram diagram = (Diagram) iterator.next();
-					byte[] svgBytes = diagram.getEncodedImage().getBytes();
-					TranscoderInput input = new TranscoderInput(new ByteArrayInputStream(svgBytes));
-					BufferedImageTranscoder imageTranscoder = new BufferedImageTranscoder();
-				    imageTranscoder.transcode(input, null);
-				    BufferedImage bufferedImage = imageTranscoder.getBufferedImage();
-				    diagram.nonBeanImage(bufferedImage);
-					Dispatcher.dispatchEvent(new JSEvent(EventType.DiagramAdded, this, diagram));
-				}
-				fileName = file.getCanonicalPath();
-				LOGGER.info("File '" + fileName + "' opened successfully.");
+			}
+			Dispatcher.dispatchEvent(new JSEvent(EventType.DiagramDeleteAll, this, null));
+			for (Iterator<Diagram> iterator = diagrams.iterator(); iterator.hasNext();) {
+				Diagram diagram = (Diagram) iterator.next();
+				Dispatcher.dispatchEvent(new JSEvent(EventType.DiagramAdded, this, diagram));
+			}
+			// images are only decoded once their diagram is shown, starting with the one selected below, which the image
+			// panel decodes in the background
+			String fileName = file.getCanonicalPath();
+			LOGGER.info("File '" + fileName + "' opened successfully.");
+			if (!diagrams.isEmpty()) {
 				Dispatcher.dispatchEvent(new JSEvent(EventType.SelectDiagram, this, diagrams.iterator().next()));
-				Dispatcher.dispatchEvent(new JSEvent(EventType.FileNameChanged, this, fileName));
-			} catch (FileNotFoundException e) {
-				LOGGER.error("Error opening file: " + file.getAbsolutePath(), e);
-			} catch (IOException e) {
-				LOGGER.error("Error opening file: " + file.getAbsolutePath(), e);
-			} catch (TranscoderException e) {
-				LOGGER.error("Error opening file: " + file.getAbsolutePath(), e);
-			} finally {
-				Dispatcher.dispatchEvent(new JSEvent(EventType.ProgressCompleted, null, null));
 			}
+			Dispatcher.dispatchEvent(new JSEvent(EventType.FileNameChanged, this, fileName));
+			Dispatcher.dispatchEvent(new JSEvent(EventType.ModelClean, this, null));
+		} catch (FileNotFoundException e) {
+			LOGGER.error("Error opening file: " + file.getAbsolutePath(), e);
+		} catch (IOException e) {
+			LOGGER.error("Error opening file: " + file.getAbsolutePath(), e);
+		} finally {
+			Dispatcher.dispatchEvent(new JSEvent(EventType.ProgressCompleted, null, null));
 		}
 	}
 
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.action;
+
+import java.awt.Component;
+import java.awt.event.ActionEvent;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.AbstractAction;
+import javax.swing.DefaultListModel;
+import javax.swing.JOptionPane;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alternatecomputing.jschnizzle.event.Dispatcher;
+import com.alternatecomputing.jschnizzle.event.EventType;
+import com.alternatecomputing.jschnizzle.event.JSEvent;
+import com.alternatecomputing.jschnizzle.model.ApplicationModel;
+import com.alternatecomputing.jschnizzle.model.Diagram;
+import com.alternatecomputing.jschnizzle.renderer.RenderCallback;
+import com.alternatecomputing.jschnizzle.renderer.Renderer;
+import com.alternatecomputing.jschnizzle.renderer.RendererException;
+import com.alternatecomputing.jschnizzle.renderer.RendererFactory;
+
+/**
+ * Action class to re-render every diagram in the project. Diagrams are grouped by renderer and each group is rendered
+ * as a batch; the rendered images are applied to the model in a single update once every render has completed.
+ */
+public class RerenderAllAction extends AbstractAction {
+	private static final long serialVersionUID = -3127466201537720184L;
+	private static final Logger LOGGER = LoggerFactory.getLogger(RerenderAllAction.class);
+	private ApplicationModel applicationModel;
+	private Component parent;
+
+	/**
+	 * constructor
+	 *
+	 * @param applicationModel application model
+	 * @param parent component on which to center the dialog
+	 */
+	public RerenderAllAction(ApplicationModel applicationModel, Component parent) {
+		super("Re-render All Diagrams", null);
+		putValue(SHORT_DESCRIPTION, "Render every diagram again");
+		this.applicationModel = applicationModel;
+		this.parent = parent;
+	}
+
+	/**
+	 * @see java.awt.event.ActionListener#actionPerformed(ActionEvent)
+	 */
+	public void actionPerformed(ActionEvent e) {
+		List<Diagram> diagrams = new ArrayList<Diagram>();
+		addAll(diagrams, applicationModel.getActivityScriptsModel());
+		addAll(diagrams, applicationModel.getClassScriptsModel());
+		addAll(diagrams, applicationModel.getUseCaseScriptsModel());
+		addAll(diagrams, applicationModel.getSequenceScriptsModel());
+		if (diagrams.isEmpty()) {
+			return;
+		}
+		int n = JOptionPane.showConfirmDialog(parent, "Re-render all " + diagrams.size() + " diagrams?\nPreviously rendered images will not be reused.", "Re-render all diagrams?", JOptionPane.YES_NO_OPTION);
+		if (n != JOptionPane.YES_OPTION) {
+			return;
+		}
+		// render copies, so that the model only changes in the final batched update
+		Map<Renderer, List<Diagram>> batches = new LinkedHashMap<Renderer, List<Diagram>>();
+		final Map<Diagram, Diagram> originals = new IdentityHashMap<Diagram, Diagram>();
+		int skipped = 0;
+		for (Diagram diagram : diagrams) {
+			try {
+				Renderer renderer = RendererFactory.getRendererForDiagram(diagram);
+				Diagram copy = copyOf(diagram);
+				originals.put(copy, diagram);
+				List<Diagram> batch = batches.get(renderer);
+				if (batch == null) {
+					batch = new ArrayList<Diagram>();
+					batches.put(renderer, batch);
+				}
+				batch.add(copy);
+			} catch (RendererException ex) {
+				LOGGER.error("Cannot re-render diagram '" + diagram.getName() + "': " + ex.getMessage());
+				skipped++;
+			}
+		}
+		final int total = originals.size();
+		if (total == 0) {
+			return;
+		}
+		LOGGER.info("Re-rendering " + total + " diagrams...");
+		final AtomicInteger completed = new AtomicInteger();
+		final AtomicInteger failed = new AtomicInteger(skipped);
+		final Map<Diagram, Diagram> rendered = Collections.synchronizedMap(new LinkedHashMap<Diagram, Diagram>());
+		RenderCallback callback = new RenderCallback() {
+			public void renderCompleted(Diagram diagram, BufferedImage image) {
+				diagram.nonBeanImage(image);
+				rendered.put(originals.get(diagram), diagram);
+				progress();
+			}
+
+			public void renderFailed(Diagram diagram, Throwable cause) {
+				LOGGER.error("Error re-rendering diagram '" + diagram.getName() + "': " + cause.getMessage());
+				failed.incrementAndGet();
+				progress();
+			}
+
+			private void progress() {
+				int done = completed.incrementAndGet();
+				Dispatcher.dispatchEvent(new JSEvent(EventType.ProgressUpdated, this, Integer.valueOf(done * 100 / total)));
+				if (done == total) {
+					Dispatcher.dispatchEvent(new JSEvent(EventType.DiagramsModified, this, new LinkedHashMap<Diagram, Diagram>(rendered)));
+					LOGGER.info("Re-rendered " + rendered.size() + " diagrams" + (failed.get() > 0 ? "; " + failed.get() + " failed." : "."));
+					Dispatcher.dispatchEvent(new JSEvent(EventType.ProgressCompleted, null, null));
+				}
+			}
+		};
+		Dispatcher.dispatchEvent(new JSEvent(EventType.ProgressUpdated, this, Integer.valueOf(0)));
+		for (Map.Entry<Renderer, List<Diagram>> batch : batches.entrySet()) {
+			batch.getKey().renderAll(batch.getValue(), callback);
+		}
+	}
+
+	private static void addAll(List<Diagram> diagrams, DefaultListModel<Diagram> model) {
+		for (int i = 0; i < model.size(); i++) {
+			diagrams.add(model.get(i));
+		}
+	}
+
+	private static Diagram copyOf(Diagram diagram) {
+		Diagram copy = new Diagram();
+		copy.setName(diagram.getName());
+		copy.setNote(diagram.getNote());
+		copy.setType(diagram.getType());
+		copy.setStyle(diagram.getStyle());
+		copy.setScript(diagram.getScript());
+		// a full re-render, e.g. after a renderer upgrade, must not be served from the render cache or refused because
+		// the script failed before; the cache entries of other projects are left alone
+		copy.nonBeanRefresh(true);
+		return copy;
+	}
+
+}
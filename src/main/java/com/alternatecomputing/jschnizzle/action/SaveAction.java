@@ -16,15 +16,17 @@
 package com.alternatecomputing.jschnizzle.action;
 
 import java.awt.event.ActionEvent;
-import java.beans.XMLEncoder;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Enumeration;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,15 +36,21 @@ import com.alternatecomputing.jschnizzle.event.EventType;
 import com.alternatecomputing.jschnizzle.event.JSEvent;
 import com.alternatecomputing.jschnizzle.model.ApplicationModel;
 import com.alternatecomputing.jschnizzle.model.Diagram;
-import com.alternatecomputing.jschnizzle.model.DiagramType;
-import com.alternatecomputing.jschnizzle.util.EnumPersistenceDelegate;
+import com.alternatecomputing.jschnizzle.util.ProjectArchive;
 
 /**
- * Action class to save a configuration file
+ * Action class to save a configuration file. Files are saved as a project container, see {@link ProjectArchive}.
  */
 public class SaveAction extends AbstractFileAction {
 	private static final long serialVersionUID = 4747699144945828010L;
 	private static final Logger LOGGER = LoggerFactory.getLogger(SaveAction.class);
+	private static final ExecutorService saveExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "project-saver");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
 	private final ApplicationModel applicationModel;
 
 	/**
@@ -71,24 +79,37 @@ public class SaveAction extends AbstractFileAction {
 		}
 	}
 
-	protected final void saveToFile(File file) {
+	/**
+	 * save the project to the given file. A snapshot of the diagrams and the changes to them is taken from the model
+	 * right away, and is written in the background.
+	 *
+	 * @param file file to save to
+	 */
+	protected final void saveToFile(final File file) {
+		List<Diagram> diagrams = new ArrayList<Diagram>();
+		addActivityDiagrams(diagrams);
+		addClassDiagrams(diagrams);
+		addUseCaseDiagrams(diagrams);
+		addSequenceDiagrams(diagrams);
+		final ProjectArchive.Snapshot snapshot = ProjectArchive.snapshot(diagrams, applicationModel.getDirtyDiagrams());
+		final int revision = applicationModel.getRevision();
+		Dispatcher.dispatchEvent(new JSEvent(EventType.ProgressStarted, null, null));
+		saveExecutor.execute(new Runnable() {
+			public void run() {
+				write(file, snapshot, revision);
+			}
+		});
+	}
+
+	private void write(File file, ProjectArchive.Snapshot snapshot, int revision) {
 		try {
 			if (!file.getName().toLowerCase().endsWith(FILE_EXTENSION)) {
 				file = new File(file.getCanonicalPath() + FILE_EXTENSION);
 			}
-			Dispatcher.dispatchEvent(new JSEvent(EventType.ProgressStarted, null, null));
-			XMLEncoder encoder = new XMLEncoder(new FileOutputStream(file));
-			encoder.setPersistenceDelegate(DiagramType.class, new EnumPersistenceDelegate());
-			List<Diagram> diagrams = new LinkedList<Diagram>();
-			addActivityDiagrams(diagrams);
-			addClassDiagrams(diagrams);
-			addUseCaseDiagrams(diagrams);
-			addSequenceDiagrams(diagrams);
-			encoder.writeObject(diagrams);
-			encoder.flush();
-			encoder.close();
+			ProjectArchive.write(file, snapshot);
 			LOGGER.info("File '" + file.getCanonicalPath() + "' saved successfully.");
 			Dispatcher.dispatchEvent(new JSEvent(EventType.FileNameChanged, this, file.getCanonicalPath()));
+			Dispatcher.dispatchEvent(new JSEvent(EventType.ModelClean, this, Integer.valueOf(revision)));
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
 		} catch (IOException e) {
@@ -98,6 +119,23 @@ public class SaveAction extends AbstractFileAction {
 		}
 	}
 
+	/**
+	 * wait until the saves that have been started have completed
+	 */
+	public static void awaitPendingSaves() {
+		try {
+			// saves run one at a time and in order, so an empty task completes after all of them
+			saveExecutor.submit(new Runnable() {
+				public void run() {
+				}
+			}).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			LOGGER.error("Error waiting for saves to complete.", e);
+		}
+	}
+
 	/**
 	 * add use case diagrams to the given model
 	 *
@@ -19,5 +19,5 @@ package com.alternatecomputing.jschnizzle.event;
  * Enumeration of the different types of events that occur in the application.
  */
 public enum EventType {
-	Log, DiagramAdded, DiagramDeleted, DiagramDeleteAll, DiagramModified, ProgressStarted, ProgressCompleted, SelectDiagram, FileNameChanged
+	Log, DiagramAdded, DiagramDeleted, DiagramDeleteAll, DiagramModified, ProgressStarted, ProgressUpdated, ProgressCompleted, SelectDiagram, FileNameChanged, DiagramsModified, ModelClean
 }
@@ -15,6 +15,12 @@
  */
 package com.alternatecomputing.jschnizzle.model;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
 import javax.swing.DefaultListModel;
 
 public class ApplicationModel {
@@ -25,6 +31,10 @@ public class ApplicationModel {
 	private DefaultListModel<Diagram> useCaseScriptsModel;
 	private DefaultListModel<Diagram> sequenceScriptsModel;
 	private boolean isDirty;
+	private int revision;
+	private int structureRevision;
+	// revision of the last change of each diagram changed since the project was last opened or saved
+	private final Map<Diagram, Integer> dirtyDiagrams = new IdentityHashMap<Diagram, Integer>();
 	private Diagram selectedDiagram;
 
 	public static ApplicationModel getInstance() {
@@ -66,19 +76,23 @@ public class ApplicationModel {
 		switch (diagram.getType()) {
 			case Activity:
 				activityScriptsModel.removeElement(diagram);
-				isDirty = true;
+				dirtyDiagrams.remove(diagram);
+				markModelDirty();
 				break;
 			case Class:
 				classScriptsModel.removeElement(diagram);
-				isDirty = true;
+				dirtyDiagrams.remove(diagram);
+				markModelDirty();
 				break;
 			case UseCase:
 				useCaseScriptsModel.removeElement(diagram);
-				isDirty = true;
+				dirtyDiagrams.remove(diagram);
+				markModelDirty();
 				break;
 			case Sequence:
 				sequenceScriptsModel.removeElement(diagram);
-				isDirty = true;
+				dirtyDiagrams.remove(diagram);
+				markModelDirty();
 				break;
 		}
 	}
@@ -88,6 +102,7 @@ public class ApplicationModel {
 		classScriptsModel.clear();
 		useCaseScriptsModel.clear();
 		sequenceScriptsModel.clear();
+		dirtyDiagrams.clear();
 		isDirty = false;
 	}
 
@@ -95,33 +110,90 @@ public class ApplicationModel {
 		switch (diagram.getType()) {
 			case Activity:
 				activityScriptsModel.addElement(diagram);
-				isDirty = true;
+				markModelDirty();
 				break;
 			case Class:
 				classScriptsModel.addElement(diagram);
-				isDirty = true;
+				markModelDirty();
 				break;
 			case UseCase:
 				useCaseScriptsModel.addElement(diagram);
-				isDirty = true;
+				markModelDirty();
 				break;
 			case Sequence:
 				sequenceScriptsModel.addElement(diagram);
-				isDirty = true;
+				markModelDirty();
 				break;
 		}
 	}
 
 	public boolean isModelDirty() {
-		return isDirty;
+		return isDirty || !dirtyDiagrams.isEmpty();
 	}
 
 	public void markModelClean() {
+		dirtyDiagrams.clear();
 		isDirty = false;
 	}
 
 	public void markModelDirty() {
 		isDirty = true;
+		structureRevision = ++revision;
+	}
+
+	/**
+	 * mark the given diagram as changed since the project was last opened or saved
+	 *
+	 * @param diagram changed diagram
+	 */
+	public void markDiagramDirty(Diagram diagram) {
+		dirtyDiagrams.put(diagram, Integer.valueOf(++revision));
+	}
+
+	/**
+	 * return whether the given diagram has changed since the project was last opened or saved
+	 *
+	 * @param diagram diagram
+	 * @return true if the diagram has changed
+	 */
+	public boolean isDiagramDirty(Diagram diagram) {
+		return dirtyDiagrams.containsKey(diagram);
+	}
+
+	/**
+	 * return the diagrams that have changed since the project was last opened or saved
+	 *
+	 * @return snapshot of the changed diagrams
+	 */
+	public Set<Diagram> getDirtyDiagrams() {
+		Set<Diagram> snapshot = Collections.newSetFromMap(new IdentityHashMap<Diagram, Boolean>());
+		snapshot.addAll(dirtyDiagrams.keySet());
+		return snapshot;
+	}
+
+	/**
+	 * return the current revision of the model, which increases with every change
+	 *
+	 * @return model revision
+	 */
+	public int getRevision() {
+		return revision;
+	}
+
+	/**
+	 * mark the changes up to the given revision as saved. Changes made while the project was being saved remain.
+	 *
+	 * @param savedRevision revision of the model when it was saved
+	 */
+	public void markModelSaved(int savedRevision) {
+		if (structureRevision <= savedRevision) {
+			isDirty = false;
+		}
+		for (Iterator<Integer> iterator = dirtyDiagrams.values().iterator(); iterator.hasNext();) {
+			if (iterator.next().intValue() <= savedRevision) {
+				iterator.remove();
+			}
+		}
 	}
 
 	public Diagram getSelectedDiagram() {
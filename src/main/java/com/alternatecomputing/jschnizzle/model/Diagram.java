@@ -18,23 +18,32 @@ package com.alternatecomputing.jschnizzle.model;
 import java.awt.Image;
 import java.io.IOException;
 import java.io.Serializable;
+import java.lang.ref.SoftReference;
+import java.util.concurrent.Callable;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.alternatecomputing.jschnizzle.util.ImageUtils;
-
 /**
  * Class to model a diagram and its metadata
  */
 public class Diagram implements Serializable {
 	private static final long serialVersionUID = -3878609436832624784L;
 	private static final Logger LOGGER = LoggerFactory.getLogger(Diagram.class);
+	private static final long FETCH_BACKOFF = 5000;
+	private static final long MAX_FETCH_BACKOFF = 300000;
 	private String name;
 	private String note;
 	private String script;
-	private Image image;
-	private String encodedImage;
+	private transient SoftReference<Image> image;
+	private transient Image pinnedImage;
+	private ImagePayload payload;
+	private transient Callable<String> encodedImageSource;
+	private transient Callable<String> fetchingSource;
+	private transient int fetchFailures;
+	private transient long retryFetchAt;
+	private transient boolean refresh;
+	private transient boolean preview;
 	private DiagramType type;
 	private DiagramStyle style;
 
@@ -94,12 +103,44 @@ public class Diagram implements Serializable {
 
 	/**
 	 * return the image for this diagram. The method name does not follow the standard bean convention so that it is not
-	 * serialized by the XMLEncoder when saving to a file.
+	 * serialized by the XMLEncoder when saving to a file. The image is only softly held while the encoded image it can be
+	 * decoded from again is at hand, and is decoded on demand after it has been reclaimed or before it was ever
+	 * decoded, fetching the encoded image from its source first if it has been deferred and no image is at hand.
 	 *
 	 * @return diagram image
 	 */
 	public Image nonBeanImage() {
-		return image;
+		Image cached = nonBeanCachedImage();
+		if (cached != null) {
+			return cached;
+		}
+		ImagePayload current = nonBeanPayload();
+		if (current == null) {
+			return null;
+		}
+		try {
+			Image decoded = current.decode();
+			synchronized (this) {
+				if (payload == current && decoded != null) {
+					image = new SoftReference<Image>(decoded);
+				}
+			}
+			return decoded;
+		} catch (IOException e) {
+			LOGGER.error("Error decoding image of diagram '" + name + "'", e);
+			return null;
+		}
+	}
+
+	/**
+	 * return the image for this diagram if it is at hand, without decoding it or fetching its encoded image, so that
+	 * the event dispatch thread can tell whether the image has to be loaded in the background first
+	 *
+	 * @return diagram image, or null if it has not been decoded or has been reclaimed
+	 */
+	public synchronized Image nonBeanCachedImage() {
+		Image current = image == null ? null : image.get();
+		return current != null ? current : pinnedImage;
 	}
 
 	/**
@@ -107,35 +148,223 @@ public class Diagram implements Serializable {
 	 *
 	 * @param image diagram image
 	 */
-	public void nonBeanImage(Image image) {
-		this.image = image;
+	public synchronized void nonBeanImage(Image image) {
+		this.image = image == null ? null : new SoftReference<Image>(image);
+		// an image rendered without its SVG at hand cannot be rasterized again, so it is held on to
+		this.pinnedImage = payload == null ? image : null;
 	}
 
 	/**
-	 * return the ascii-encoded representation of the image for this diagram
+	 * return the ascii-encoded representation of the image for this diagram, fetching it from its source first if it
+	 * was rendered as a raster image only. The representation is held compressed and decompressed on every call.
 	 *
 	 * @return ascii-encoded representation of the diagram image
 	 */
 	public String getEncodedImage() {
-		return encodedImage;
+		ImagePayload current = nonBeanPayload();
+		return current == null ? null : current.getText();
+	}
+
+	/**
+	 * return the encoded image for this diagram and its format, fetching it from its source first if it was rendered as
+	 * a raster image only. The same instance is returned until the image changes. The fetch may block on the network,
+	 * so the event dispatch thread should check {@link #hasEncodedImage()} first. It runs without holding this
+	 * diagram's lock, concurrent callers share it, and after a failed fetch the source is left alone for a while,
+	 * backing off exponentially, so that repeated calls do not hammer an unavailable source.
+	 *
+	 * @return payload of the diagram image, or null if there is none or it could not be fetched
+	 */
+	public ImagePayload nonBeanPayload() {
+		Callable<String> source;
+		synchronized (this) {
+			while (fetchingSource != null && fetchingSource == encodedImageSource) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return payload;
+				}
+			}
+			if (payload != null || encodedImageSource == null || System.currentTimeMillis() < retryFetchAt) {
+				return payload;
+			}
+			source = encodedImageSource;
+			fetchingSource = source;
+		}
+		String fetched = null;
+		boolean failed = true;
+		try {
+			fetched = source.call();
+			failed = false;
+		} catch (Exception e) {
+			LOGGER.error("Error fetching image of diagram '" + name + "'", e);
+		}
+		synchronized (this) {
+			if (encodedImageSource == source) {
+				if (failed) {
+					fetchFailures++;
+					retryFetchAt = System.currentTimeMillis() + Math.min(MAX_FETCH_BACKOFF, FETCH_BACKOFF << Math.min(fetchFailures - 1, 10));
+				} else {
+					payload = fetched == null ? null : ImagePayload.forEncodedImage(fetched);
+					encodedImageSource = null;
+					pinnedImage = null;
+				}
+			}
+			if (fetchingSource == source) {
+				fetchingSource = null;
+			}
+			notifyAll();
+			return payload;
+		}
 	}
 
 	/**
-	 * set the ascii-encoded representation of the image for this diagram
+	 * set the ascii-encoded representation of the image for this diagram. Its format is told from its first characters;
+	 * it is not decoded until the image is needed.
 	 *
 	 * @param encodedImage ascii-encoded representation of the diagram image
 	 */
 	public void setEncodedImage(String encodedImage) {
-		this.encodedImage = encodedImage;
-		if (this.image == null) {
-			try {
-				this.image = ImageUtils.decodeImage(encodedImage);
-			} catch (IOException e) {
-				LOGGER.error("Error decoding image", e);
+		nonBeanPayload(encodedImage == null ? null : ImagePayload.forEncodedImage(encodedImage));
+	}
+
+	/**
+	 * set the encoded image for this diagram and its format, e.g. as compressed straight from a renderer's response
+	 *
+	 * @param payload payload of the diagram image
+	 */
+	public synchronized void nonBeanPayload(ImagePayload payload) {
+		this.payload = payload;
+		setSource(null);
+		if (payload != null) {
+			pinnedImage = null;
+		}
+	}
+
+	/**
+	 * return whether the ascii-encoded representation of the image is at hand, without fetching it from its source
+	 *
+	 * @return true if the encoded image has been set or fetched
+	 */
+	public synchronized boolean hasEncodedImage() {
+		return payload != null;
+	}
+
+	/**
+	 * defer the ascii-encoded representation of the image for this diagram to the given source, which is called the
+	 * first time the encoded image is needed. Like the image, the source is not saved to a file.
+	 *
+	 * @param encodedImageSource source of the ascii-encoded representation of the diagram image
+	 */
+	public synchronized void nonBeanEncodedImageSource(Callable<String> encodedImageSource) {
+		if (pinnedImage == null && image != null) {
+			pinnedImage = image.get();
+		}
+		this.payload = null;
+		setSource(encodedImageSource);
+	}
+
+	/**
+	 * defer the ascii-encoded representation of the image for this diagram to the given source instead, provided it is
+	 * still deferred to the expected one, i.e. it has neither been fetched nor changed since
+	 *
+	 * @param expected source the encoded image is expected to be deferred to
+	 * @param encodedImageSource new source of the encoded image, or null to drop it
+	 * @return true if the source has been replaced
+	 */
+	public synchronized boolean nonBeanMoveEncodedImageSource(Callable<String> expected, Callable<String> encodedImageSource) {
+		if (payload != null || this.encodedImageSource != expected) {
+			return false;
+		}
+		nonBeanEncodedImageSource(encodedImageSource);
+		return true;
+	}
+
+	/**
+	 * replace the source of the encoded image, forgetting any failures to fetch from the previous one
+	 */
+	private void setSource(Callable<String> encodedImageSource) {
+		this.encodedImageSource = encodedImageSource;
+		this.fetchFailures = 0;
+		this.retryFetchAt = 0;
+		// callers waiting for a fetch from the previous source
+		notifyAll();
+	}
+
+	/**
+	 * return the source the ascii-encoded representation of the image is deferred to
+	 *
+	 * @return source of the encoded image, or null if it has been fetched or was never deferred
+	 */
+	public synchronized Callable<String> nonBeanEncodedImageSource() {
+		return encodedImageSource;
+	}
+
+	/**
+	 * take over the ascii-encoded representation of the image of the given diagram, or its source if it has not been
+	 * fetched yet
+	 *
+	 * @param other diagram to copy from
+	 */
+	public void copyEncodedImage(Diagram other) {
+		ImagePayload otherPayload;
+		Callable<String> otherSource;
+		synchronized (other) {
+			otherPayload = other.payload;
+			otherSource = other.encodedImageSource;
+		}
+		if (otherPayload == null && otherSource != null) {
+			nonBeanEncodedImageSource(otherSource);
+		} else {
+			// payloads are immutable, so it can be shared rather than compressed again
+			synchronized (this) {
+				this.payload = otherPayload;
+				setSource(null);
+				if (otherPayload != null) {
+					pinnedImage = null;
+				}
 			}
 		}
 	}
 
+	/**
+	 * return whether this diagram must be rendered afresh, bypassing cached renders and remembered failures
+	 *
+	 * @return true if cached results must not be used
+	 */
+	public boolean nonBeanRefresh() {
+		return refresh;
+	}
+
+	/**
+	 * set whether this diagram must be rendered afresh, bypassing cached renders and remembered failures. Like the
+	 * image, the flag is not saved to a file.
+	 *
+	 * @param refresh true if cached results must not be used
+	 */
+	public void nonBeanRefresh(boolean refresh) {
+		this.refresh = refresh;
+	}
+
+	/**
+	 * return whether this diagram is a throwaway preview of an edit, whose render may be cancelled at any time
+	 *
+	 * @return true if this diagram is a preview
+	 */
+	public boolean nonBeanPreview() {
+		return preview;
+	}
+
+	/**
+	 * set whether this diagram is a throwaway preview of an edit, whose render may be cancelled at any time. Like the
+	 * image, the flag is not saved to a file.
+	 *
+	 * @param preview true if this diagram is a preview
+	 */
+	public void nonBeanPreview(boolean preview) {
+		this.preview = preview;
+	}
+
 	/**
 	 * return the type of this diagram
 	 *
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.model;
+
+import java.io.Serializable;
+
+/**
+ * Enumeration of the formats of an encoded diagram image
+ */
+public enum ImageFormat implements Serializable {
+	/** SVG text */
+	SVG,
+	/** base64-encoded PNG image */
+	PNG,
+	/** base64-encoded JPEG image, as saved by early versions */
+	JPEG
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.model;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.Serializable;
+
+import org.apache.batik.transcoder.TranscoderException;
+
+import com.alternatecomputing.jschnizzle.util.CompressedText;
+import com.alternatecomputing.jschnizzle.util.ImageUtils;
+
+/**
+ * Immutable encoded diagram image of a known format. The text is held compressed, and is only decoded into an image
+ * when {@link #decode()} is called.
+ */
+public final class ImagePayload implements Serializable {
+	private static final long serialVersionUID = -6129731525867103448L;
+	private final ImageFormat format;
+	private final CompressedText text;
+
+	/**
+	 * constructor
+	 *
+	 * @param format format of the encoded image
+	 * @param text SVG text, or the base64 encoding of a raster image
+	 */
+	public ImagePayload(ImageFormat format, String text) {
+		this(format, new CompressedText(text));
+	}
+
+	/**
+	 * constructor
+	 *
+	 * @param format format of the encoded image
+	 * @param text compressed SVG text, or the compressed base64 encoding of a raster image
+	 */
+	public ImagePayload(ImageFormat format, CompressedText text) {
+		this.format = format;
+		this.text = text;
+	}
+
+	/**
+	 * create a payload for the given encoded image, telling its format from the first characters of the text
+	 *
+	 * @param text SVG text, or the base64 encoding of a PNG or JPEG image
+	 * @return image payload
+	 */
+	public static ImagePayload forEncodedImage(String text) {
+		return new ImagePayload(detectFormat(text), text);
+	}
+
+	private static ImageFormat detectFormat(String text) {
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (!Character.isWhitespace(c)) {
+				if (c == '<') {
+					return ImageFormat.SVG;
+				}
+				// the base64 encoding of the PNG signature
+				return text.startsWith("iVBORw0KGgo", i) ? ImageFormat.PNG : ImageFormat.JPEG;
+			}
+		}
+		return ImageFormat.SVG;
+	}
+
+	public ImageFormat getFormat() {
+		return format;
+	}
+
+	/**
+	 * return the encoded image
+	 *
+	 * @return SVG text, or the base64 encoding of a raster image
+	 */
+	public String getText() {
+		return text.toString();
+	}
+
+	/**
+	 * return the size of the encoded image in bytes
+	 *
+	 * @return raw size
+	 */
+	public int getRawSize() {
+		return text.getRawSize();
+	}
+
+	/**
+	 * return the size of the encoded image as held in memory
+	 *
+	 * @return compressed size
+	 */
+	public int getCompressedSize() {
+		return text.getCompressedSize();
+	}
+
+	/**
+	 * decode the image with the decoder for its format
+	 *
+	 * @return image, or null if a raster image is in a format that cannot be read
+	 * @throws IOException if the image cannot be decoded
+	 */
+	public BufferedImage decode() throws IOException {
+		if (format == ImageFormat.SVG) {
+			try {
+				return ImageUtils.transcodeSVG(getText());
+			} catch (TranscoderException e) {
+				IOException ioe = new IOException("Unable to rasterize SVG image");
+				ioe.initCause(e);
+				throw ioe;
+			}
+		}
+		return ImageUtils.decodeImage(getText());
+	}
+
+}
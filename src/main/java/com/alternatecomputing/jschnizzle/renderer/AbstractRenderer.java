@@ -0,0 +1,48 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer;
+
+import java.awt.image.BufferedImage;
+import java.util.Collection;
+import java.util.concurrent.Future;
+
+import com.alternatecomputing.jschnizzle.model.Diagram;
+
+/**
+ * Base class for renderers, providing the asynchronous rendering methods on top of the synchronous
+ * {@link Renderer#render(Diagram)}. The number of renders a batch keeps in flight is configured with the
+ * <code>jschnizzle.render.batchParallelism</code> system property.
+ */
+public abstract class AbstractRenderer implements Renderer {
+	private static final int BATCH_PARALLELISM = Integer.getInteger("jschnizzle.render.batchParallelism", 4).intValue();
+
+	/**
+	 * @see com.alternatecomputing.jschnizzle.renderer.Renderer#renderAsync(Diagram, RenderCallback)
+	 */
+	public Future<BufferedImage> renderAsync(Diagram diagram, RenderCallback callback) {
+		return RendererFactory.submit(this, diagram, callback);
+	}
+
+	/**
+	 * @see com.alternatecomputing.jschnizzle.renderer.Renderer#renderAll(Collection, RenderCallback)
+	 */
+	public RenderBatch renderAll(Collection<Diagram> diagrams, RenderCallback callback) {
+		RenderBatch batch = new RenderBatch(this, diagrams, callback, BATCH_PARALLELISM);
+		batch.start();
+		return batch;
+	}
+
+}
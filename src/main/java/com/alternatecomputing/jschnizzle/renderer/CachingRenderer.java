@@ -0,0 +1,87 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer;
+
+import java.awt.image.BufferedImage;
+
+import org.apache.batik.transcoder.TranscoderException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alternatecomputing.jschnizzle.model.Diagram;
+import com.alternatecomputing.jschnizzle.model.DiagramStyle;
+import com.alternatecomputing.jschnizzle.model.DiagramType;
+import com.alternatecomputing.jschnizzle.renderer.util.RenderCache;
+import com.alternatecomputing.jschnizzle.util.ImageUtils;
+
+/**
+ * Renderer decorator that serves previously rendered SVG content from a persistent cache and only delegates to the
+ * wrapped renderer on a cache miss. Diagrams flagged with {@link Diagram#nonBeanRefresh()} are always rendered, and
+ * their render replaces the cached one.
+ */
+public class CachingRenderer extends AbstractRenderer {
+	private static final Logger LOGGER = LoggerFactory.getLogger(CachingRenderer.class);
+	private final Renderer delegate;
+	private final RenderCache cache;
+
+	/**
+	 * constructor
+	 *
+	 * @param delegate renderer to use on a cache miss
+	 * @param cache cache of rendered SVG content
+	 */
+	public CachingRenderer(Renderer delegate, RenderCache cache) {
+		this.delegate = delegate;
+		this.cache = cache;
+	}
+
+	public BufferedImage render(Diagram diagram) {
+		if (diagram.getScript() == null) {
+			throw new RendererException("no script defined.");
+		}
+		String key = RenderKey.forDiagram(getRendererType(), diagram);
+		String svg = diagram.nonBeanRefresh() ? null : cache.get(key);
+		if (svg != null) {
+			try {
+				BufferedImage image = ImageUtils.transcodeSVG(svg);
+				diagram.setEncodedImage(svg);
+				LOGGER.debug("Render cache hit for diagram '" + diagram.getName() + "'.");
+				return image;
+			} catch (TranscoderException e) {
+				LOGGER.warn("Ignoring unusable render cache entry " + key + ".", e);
+			}
+		}
+		BufferedImage image = delegate.render(diagram);
+		// raster renders defer fetching the SVG; there is nothing to cache until it is needed
+		if (diagram.hasEncodedImage()) {
+			cache.put(key, diagram.getEncodedImage());
+		}
+		return image;
+	}
+
+	public boolean canRender(Diagram diagram) {
+		return delegate.canRender(diagram);
+	}
+
+	public DiagramStyle[] getStylesForType(DiagramType diagramType) {
+		return delegate.getStylesForType(diagramType);
+	}
+
+	public RendererType getRendererType() {
+		return delegate.getRendererType();
+	}
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alternatecomputing.jschnizzle.model.Diagram;
+import com.alternatecomputing.jschnizzle.model.DiagramStyle;
+import com.alternatecomputing.jschnizzle.model.DiagramType;
+
+/**
+ * Renderer that tries a chain of renderers in priority order, falling back to the next renderer when one is unavailable
+ * (for example because its remote endpoint is down and its circuit breaker is open). A renderer that rejects the script
+ * is not second-guessed by the next one; see {@link RendererUnavailableException#isTransient(Throwable)}. Styles and
+ * renderer type are those of the primary renderer.
+ */
+public class FallbackRenderer extends AbstractRenderer {
+	private static final Logger LOGGER = LoggerFactory.getLogger(FallbackRenderer.class);
+	private final List<Renderer> chain;
+
+	/**
+	 * constructor
+	 *
+	 * @param chain renderers in the order they should be tried; must not be empty
+	 */
+	public FallbackRenderer(List<Renderer> chain) {
+		this.chain = new ArrayList<Renderer>(chain);
+	}
+
+	public BufferedImage render(Diagram diagram) {
+		RendererException failure = null;
+		for (Renderer renderer : chain) {
+			if (!renderer.canRender(diagram)) {
+				continue;
+			}
+			try {
+				return renderer.render(diagram);
+			} catch (RendererException e) {
+				if (Thread.currentThread().isInterrupted()) {
+					throw e; // cancelled; don't try the next renderer
+				}
+				if (!RendererUnavailableException.isTransient(e)) {
+					throw e; // the script itself could not be rendered
+				}
+				if (failure == null) {
+					failure = e;
+				}
+				LOGGER.info(renderer.getRendererType() + " could not render diagram '" + diagram.getName() + "' (" + e.getMessage() + "); trying the next renderer.");
+			}
+		}
+		if (failure == null) {
+			throw new RendererException("no registered renderers support diagram type '" + diagram.getType() + "'");
+		}
+		throw failure;
+	}
+
+	public boolean canRender(Diagram diagram) {
+		for (Renderer renderer : chain) {
+			if (renderer.canRender(diagram)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public DiagramStyle[] getStylesForType(DiagramType diagramType) {
+		return chain.get(0).getStylesForType(diagramType);
+	}
+
+	public RendererType getRendererType() {
+		return chain.get(0).getRendererType();
+	}
+
+	/**
+	 * return the renderers in the order they are tried
+	 *
+	 * @return renderer chain
+	 */
+	public List<Renderer> getChain() {
+		return new ArrayList<Renderer>(chain);
+	}
+
+}
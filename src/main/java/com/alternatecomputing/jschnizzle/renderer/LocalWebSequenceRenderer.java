@@ -0,0 +1,91 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer;
+
+import java.awt.image.BufferedImage;
+
+import org.apache.batik.transcoder.TranscoderException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alternatecomputing.jschnizzle.model.Diagram;
+import com.alternatecomputing.jschnizzle.model.DiagramStyle;
+import com.alternatecomputing.jschnizzle.model.DiagramType;
+import com.alternatecomputing.jschnizzle.renderer.local.SequenceDiagram;
+import com.alternatecomputing.jschnizzle.renderer.local.SequenceDiagramWriter;
+import com.alternatecomputing.jschnizzle.renderer.local.SequenceParser;
+import com.alternatecomputing.jschnizzle.renderer.metrics.PhaseTimer;
+import com.alternatecomputing.jschnizzle.renderer.metrics.RenderMetrics;
+import com.alternatecomputing.jschnizzle.renderer.metrics.RenderPhase;
+import com.alternatecomputing.jschnizzle.util.ImageUtils;
+
+/**
+ * Renders sequence diagrams written in the websequencediagrams syntax in-process, without contacting
+ * websequencediagrams.com. The renderer holds no per-render state, so diagrams render in parallel on every render
+ * thread.
+ */
+public class LocalWebSequenceRenderer extends AbstractRenderer {
+	private static final Logger LOGGER = LoggerFactory.getLogger(LocalWebSequenceRenderer.class);
+	private DiagramStyle[] styles = new DiagramStyle[] {
+			new DiagramStyle("Plain UML", "default"),
+			new DiagramStyle("Blue Modern", "modern-blue"),
+			new DiagramStyle("Napkin", "napkin")
+			};
+
+	public BufferedImage render(Diagram diagram) {
+		String script = diagram.getScript();
+		if (script == null) {
+			throw new RendererException("no script defined.");
+		}
+		String svgContents;
+		PhaseTimer layoutTimer = RenderMetrics.start(getRendererType(), RenderPhase.Layout);
+		try {
+			SequenceDiagram sequenceDiagram = SequenceParser.parse(script);
+			String style = diagram.getStyle() == null ? null : diagram.getStyle().getValue();
+			svgContents = new SequenceDiagramWriter(style, script.hashCode()).write(sequenceDiagram);
+			layoutTimer.stop(svgContents.length());
+		} finally {
+			layoutTimer.close();
+		}
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug(svgContents);
+		}
+		PhaseTimer transcodeTimer = RenderMetrics.start(getRendererType(), RenderPhase.Transcode);
+		try {
+			BufferedImage image = ImageUtils.transcodeSVG(svgContents);
+			transcodeTimer.stop(svgContents.length());
+			diagram.setEncodedImage(svgContents);
+			return image;
+		} catch (TranscoderException e) {
+			throw new RendererException(e);
+		} finally {
+			transcodeTimer.close();
+		}
+	}
+
+	public boolean canRender(Diagram diagram) {
+		return DiagramType.Sequence.equals(diagram.getType());
+	}
+
+	public DiagramStyle[] getStylesForType(DiagramType diagramType) {
+		return styles;
+	}
+
+	public RendererType getRendererType() {
+		return RendererType.LocalWebSequence;
+	}
+
+}
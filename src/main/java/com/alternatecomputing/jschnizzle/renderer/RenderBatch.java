@@ -0,0 +1,192 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+import com.alternatecomputing.jschnizzle.model.Diagram;
+
+/**
+ * A batch of diagrams rendered by one renderer with a bounded number of renders in flight. The largest scripts are
+ * submitted first so that the slowest renders do not end up as a long tail. Each time a render finishes the next
+ * diagram is submitted, so a batch never occupies more than its share of the render executor or its queue.
+ */
+public class RenderBatch {
+	private final Renderer renderer;
+	private final RenderCallback callback;
+	private final int parallelism;
+	private final LinkedList<Diagram> queue;
+	private final List<Future<BufferedImage>> futures = new ArrayList<Future<BufferedImage>>();
+	private final CountDownLatch done = new CountDownLatch(1);
+	private final int total;
+	private int inFlight;
+	private int completed;
+	private int failed;
+	private boolean cancelled;
+
+	/**
+	 * constructor
+	 *
+	 * @param renderer renderer for every diagram in the batch
+	 * @param diagrams diagrams to render
+	 * @param callback callback notified as each render completes, or null
+	 * @param parallelism maximum number of renders in flight at once
+	 */
+	public RenderBatch(Renderer renderer, Collection<Diagram> diagrams, RenderCallback callback, int parallelism) {
+		this.renderer = renderer;
+		this.callback = callback;
+		this.parallelism = Math.max(1, parallelism);
+		List<Diagram> sorted = new ArrayList<Diagram>(diagrams);
+		Collections.sort(sorted, new Comparator<Diagram>() {
+			public int compare(Diagram d1, Diagram d2) {
+				return scriptLength(d2) - scriptLength(d1);
+			}
+		});
+		this.queue = new LinkedList<Diagram>(sorted);
+		this.total = sorted.size();
+	}
+
+	/**
+	 * submit the first renders of the batch
+	 */
+	public void start() {
+		submitNext();
+	}
+
+	/**
+	 * cancel the renders that have not completed yet; the callback is not notified for them
+	 */
+	public void cancel() {
+		List<Future<BufferedImage>> running;
+		synchronized (this) {
+			cancelled = true;
+			queue.clear();
+			running = new ArrayList<Future<BufferedImage>>(futures);
+		}
+		for (Future<BufferedImage> future : running) {
+			future.cancel(true);
+		}
+		done.countDown();
+	}
+
+	/**
+	 * wait for every render in the batch to complete, or for the batch to be cancelled
+	 *
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void await() throws InterruptedException {
+		done.await();
+	}
+
+	public boolean isDone() {
+		return done.getCount() == 0;
+	}
+
+	public int getTotalCount() {
+		return total;
+	}
+
+	/**
+	 * return the number of renders that have completed, successfully or not
+	 *
+	 * @return completed render count
+	 */
+	public synchronized int getCompletedCount() {
+		return completed;
+	}
+
+	public synchronized int getFailedCount() {
+		return failed;
+	}
+
+	private void submitNext() {
+		while (true) {
+			Diagram diagram;
+			synchronized (this) {
+				if (cancelled || queue.isEmpty() || inFlight >= parallelism) {
+					if (inFlight == 0 && (cancelled || queue.isEmpty())) {
+						done.countDown();
+					}
+					return;
+				}
+				diagram = queue.removeFirst();
+				inFlight++;
+			}
+			try {
+				Future<BufferedImage> future = renderer.renderAsync(diagram, new RenderCallback() {
+					public void renderCompleted(Diagram diagram, BufferedImage image) {
+						try {
+							if (callback != null) {
+								callback.renderCompleted(diagram, image);
+							}
+						} finally {
+							renderFinished(false);
+						}
+					}
+
+					public void renderFailed(Diagram diagram, Throwable cause) {
+						try {
+							if (callback != null) {
+								callback.renderFailed(diagram, cause);
+							}
+						} finally {
+							renderFinished(true);
+						}
+					}
+				});
+				synchronized (this) {
+					futures.add(future);
+				}
+			} catch (RendererException e) {
+				try {
+					if (callback != null) {
+						callback.renderFailed(diagram, e);
+					}
+				} finally {
+					synchronized (this) {
+						inFlight--;
+						completed++;
+						failed++;
+					}
+				}
+			}
+		}
+	}
+
+	private void renderFinished(boolean failure) {
+		synchronized (this) {
+			inFlight--;
+			completed++;
+			if (failure) {
+				failed++;
+			}
+		}
+		submitNext();
+	}
+
+	private static int scriptLength(Diagram diagram) {
+		return diagram.getScript() == null ? 0 : diagram.getScript().length();
+	}
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer;
+
+import java.awt.image.BufferedImage;
+
+import com.alternatecomputing.jschnizzle.model.Diagram;
+
+/**
+ * Interface for classes that receive the outcome of an asynchronous render. Callbacks are invoked on the render thread,
+ * and are not invoked at all if the render was cancelled.
+ */
+public interface RenderCallback {
+
+	/**
+	 * receive notification that a diagram was rendered successfully
+	 *
+	 * @param diagram diagram that was rendered
+	 * @param image rendered image
+	 */
+	public void renderCompleted(Diagram diagram, BufferedImage image);
+
+	/**
+	 * receive notification that rendering a diagram failed
+	 *
+	 * @param diagram diagram that failed to render
+	 * @param cause cause of the failure
+	 */
+	public void renderFailed(Diagram diagram, Throwable cause);
+
+}
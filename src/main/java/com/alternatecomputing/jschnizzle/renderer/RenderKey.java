@@ -0,0 +1,65 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.alternatecomputing.jschnizzle.model.Diagram;
+
+/**
+ * Content-addressed key identifying the output of a render request
+ */
+public class RenderKey {
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	/**
+	 * create the key for rendering the given diagram with the given renderer type. The key is a hash over the renderer
+	 * type, diagram type, style value and canonical script, so two diagrams that would produce the same image share a
+	 * key even if their scripts differ in whitespace or comments.
+	 *
+	 * @param rendererType type of renderer producing the image
+	 * @param diagram diagram to be rendered
+	 * @return hex-encoded key
+	 */
+	public static String forDiagram(RendererType rendererType, Diagram diagram) {
+		StringBuilder buffer = new StringBuilder();
+		buffer.append(rendererType).append('\n');
+		buffer.append(diagram.getType()).append('\n');
+		buffer.append(diagram.getStyle() == null ? "" : diagram.getStyle().getValue()).append('\n');
+		buffer.append(ScriptCanonicalizer.forType(diagram.getType()).canonicalize(diagram.getScript()));
+		return sha1(buffer.toString());
+	}
+
+	private static String sha1(String value) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			byte[] hash = digest.digest(value.getBytes("UTF-8"));
+			char[] chars = new char[hash.length * 2];
+			for (int i = 0; i < hash.length; i++) {
+				chars[i * 2] = HEX[(hash[i] >> 4) & 0xf];
+				chars[i * 2 + 1] = HEX[hash[i] & 0xf];
+			}
+			return new String(chars);
+		} catch (NoSuchAlgorithmException e) {
+			throw new RendererException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new RendererException(e);
+		}
+	}
+
+}
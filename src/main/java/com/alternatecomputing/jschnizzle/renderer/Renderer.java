@@ -16,6 +16,8 @@
 package com.alternatecomputing.jschnizzle.renderer;
 
 import java.awt.image.BufferedImage;
+import java.util.Collection;
+import java.util.concurrent.Future;
 
 import com.alternatecomputing.jschnizzle.model.Diagram;
 import com.alternatecomputing.jschnizzle.model.DiagramStyle;
@@ -29,4 +31,27 @@ public interface Renderer {
 
 	public BufferedImage render(Diagram diagram);
 
+	/**
+	 * render the given diagram on the shared render executor. Java 7 has no composable future, so the outcome is
+	 * reported through the callback, and the returned future only serves to wait for or cancel the render.
+	 *
+	 * @param diagram diagram to render
+	 * @param callback callback notified when the render completes, or null
+	 * @return future for the rendered image, which may be used to cancel the render
+	 * @throws RendererException if the render queue is full
+	 */
+	public Future<BufferedImage> renderAsync(Diagram diagram, RenderCallback callback);
+
+	/**
+	 * render all of the given diagrams on the shared render executor, largest scripts first, with a bounded number of
+	 * renders in flight
+	 *
+	 * @param diagrams diagrams to render
+	 * @param callback callback notified as each render completes, or null
+	 * @return the started batch, which may be used to wait for or cancel the renders
+	 */
+	public RenderBatch renderAll(Collection<Diagram> diagrams, RenderCallback callback);
+
+	public RendererType getRendererType();
+
 }
@@ -26,4 +26,8 @@ public class RendererException extends RuntimeException {
 		super(e);
 	}
 
+	public RendererException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
 }
@@ -15,24 +15,226 @@
  */
 package com.alternatecomputing.jschnizzle.renderer;
 
-import java.util.Collection;
-import java.util.LinkedList;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.alternatecomputing.jschnizzle.model.Diagram;
+import com.alternatecomputing.jschnizzle.model.DiagramType;
+import com.alternatecomputing.jschnizzle.renderer.metrics.PhaseTimer;
+import com.alternatecomputing.jschnizzle.renderer.metrics.RenderMetrics;
+import com.alternatecomputing.jschnizzle.renderer.metrics.RenderPhase;
+import com.alternatecomputing.jschnizzle.renderer.util.RenderCache;
 
 public class RendererFactory {
-	private static Collection<Renderer> renderers = new LinkedList<Renderer>();
+	private static final Logger LOGGER = LoggerFactory.getLogger(RendererFactory.class);
+	private static final int DEFAULT_PRIORITY = 100;
+	private static final List<Registration> registrations = new ArrayList<Registration>();
+	private static volatile Map<DiagramType, Renderer> renderersByType = new EnumMap<DiagramType, Renderer>(DiagramType.class);
+	private static final ThreadPoolExecutor renderExecutor = createRenderExecutor();
 
+	/**
+	 * register a renderer with the default priority
+	 *
+	 * @param renderer renderer
+	 */
 	public static void registerRenderer(Renderer renderer) {
-		renderers.add(renderer);
+		registerRenderer(renderer, DEFAULT_PRIORITY);
+	}
+
+	/**
+	 * register a renderer. Renderers for the same diagram type are tried in priority order, lowest first, and in
+	 * registration order for equal priorities.
+	 *
+	 * @param renderer renderer
+	 * @param priority priority
+	 */
+	public static synchronized void registerRenderer(Renderer renderer, int priority) {
+		registrations.add(new Registration(renderer, priority, registrations.size()));
+		rebuildIndex();
+	}
+
+	/**
+	 * discover and register the renderers of every {@link RendererProvider} on the class path, each wrapped in the
+	 * given render cache
+	 *
+	 * @param cache render cache
+	 */
+	public static void loadRenderers(RenderCache cache) {
+		Iterator<RendererProvider> providers = ServiceLoader.load(RendererProvider.class).iterator();
+		while (true) {
+			try {
+				if (!providers.hasNext()) {
+					break;
+				}
+				RendererProvider provider = providers.next();
+				Renderer renderer = provider.createRenderer();
+				registerRenderer(new SingleFlightRenderer(new CachingRenderer(renderer, cache)), provider.getPriority());
+				LOGGER.debug("Registered " + renderer.getRendererType() + " renderer with priority " + provider.getPriority() + ".");
+			} catch (ServiceConfigurationError e) {
+				LOGGER.error("Skipping renderer provider that could not be loaded.", e);
+			}
+		}
 	}
 
 	public static Renderer getRendererForDiagram(Diagram diagram) {
-		for (Renderer renderer : renderers) {
-			if (renderer.canRender(diagram)) {
-				return renderer;
+		Renderer renderer = diagram.getType() == null ? null : renderersByType.get(diagram.getType());
+		if (renderer == null) {
+			throw new RendererException("no registered renderers support diagram type '" + diagram.getType() + "'");
+		}
+		return renderer;
+	}
+
+	/**
+	 * index the registered renderers by the diagram types they support. Types supported by more than one renderer get
+	 * a fallback chain in priority order.
+	 */
+	private static void rebuildIndex() {
+		List<Registration> sorted = new ArrayList<Registration>(registrations);
+		Collections.sort(sorted);
+		Map<DiagramType, Renderer> index = new EnumMap<DiagramType, Renderer>(DiagramType.class);
+		for (DiagramType type : DiagramType.values()) {
+			Diagram probe = new Diagram();
+			probe.setType(type);
+			List<Renderer> chain = new ArrayList<Renderer>();
+			for (Registration registration : sorted) {
+				if (registration.renderer.canRender(probe)) {
+					chain.add(registration.renderer);
+				}
+			}
+			if (chain.size() == 1) {
+				index.put(type, chain.get(0));
+			} else if (chain.size() > 1) {
+				index.put(type, new FallbackRenderer(chain));
+			}
+		}
+		renderersByType = index;
+	}
+
+	/**
+	 * submit a render of the given diagram to the shared render executor. The render is timed as the
+	 * {@link RenderPhase#Render} phase of the renderer.
+	 *
+	 * @param renderer renderer to use
+	 * @param diagram diagram to render
+	 * @param callback callback notified when the render completes, or null
+	 * @return future for the rendered image
+	 * @throws RendererException if the render queue is full
+	 */
+	public static Future<BufferedImage> submit(final Renderer renderer, final Diagram diagram, final RenderCallback callback) {
+		FutureTask<BufferedImage> task = new FutureTask<BufferedImage>(new Callable<BufferedImage>() {
+			public BufferedImage call() throws Exception {
+				PhaseTimer timer = RenderMetrics.start(renderer.getRendererType(), RenderPhase.Render);
+				try {
+					BufferedImage image = renderer.render(diagram);
+					timer.stop(0);
+					return image;
+				} finally {
+					timer.close();
+				}
+			}
+		}) {
+			@Override
+			protected void done() {
+				if (callback == null || isCancelled()) {
+					return;
+				}
+				try {
+					callback.renderCompleted(diagram, get());
+				} catch (ExecutionException e) {
+					callback.renderFailed(diagram, e.getCause());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		try {
+			renderExecutor.execute(task);
+		} catch (RejectedExecutionException e) {
+			throw new RendererException("render queue is full; " + renderExecutor.getQueue().size() + " renders are waiting.");
+		}
+		return task;
+	}
+
+	/**
+	 * return the number of renders waiting for a render thread
+	 *
+	 * @return render queue depth
+	 */
+	public static int getQueuedRenderCount() {
+		return renderExecutor.getQueue().size();
+	}
+
+	/**
+	 * return the number of renders currently executing
+	 *
+	 * @return active render count
+	 */
+	public static int getActiveRenderCount() {
+		return renderExecutor.getActiveCount();
+	}
+
+	/**
+	 * create the bounded executor used for all asynchronous renders. The number of render threads and the maximum
+	 * number of queued renders are configured with the <code>jschnizzle.render.threads</code> and
+	 * <code>jschnizzle.render.queueDepth</code> system properties.
+	 *
+	 * @return render executor
+	 */
+	private static ThreadPoolExecutor createRenderExecutor() {
+		int threads = Integer.getInteger("jschnizzle.render.threads", Math.max(4, Runtime.getRuntime().availableProcessors())).intValue();
+		int queueDepth = Integer.getInteger("jschnizzle.render.queueDepth", 256).intValue();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueDepth), new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "renderer-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * a registered renderer and its position in the fallback order
+	 */
+	private static class Registration implements Comparable<Registration> {
+		private final Renderer renderer;
+		private final int priority;
+		private final int sequence;
+
+		private Registration(Renderer renderer, int priority, int sequence) {
+			this.renderer = renderer;
+			this.priority = priority;
+			this.sequence = sequence;
+		}
+
+		public int compareTo(Registration other) {
+			if (priority != other.priority) {
+				return priority < other.priority ? -1 : 1;
 			}
+			return sequence - other.sequence;
 		}
-		throw new RendererException("no registered renderers support diagram type '" + diagram.getType() + "'");
 	}
 }
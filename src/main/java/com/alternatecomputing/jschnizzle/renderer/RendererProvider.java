@@ -0,0 +1,41 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer;
+
+/**
+ * Service provider interface for renderers. Implementations are discovered with {@link java.util.ServiceLoader} from
+ * <code>META-INF/services/com.alternatecomputing.jschnizzle.renderer.RendererProvider</code> and must have a public
+ * no-argument constructor.
+ */
+public interface RendererProvider {
+
+	/**
+	 * create the renderer. The renderer is wrapped in the render cache by the registry, so it should not cache
+	 * results itself.
+	 *
+	 * @return renderer
+	 */
+	public Renderer createRenderer();
+
+	/**
+	 * return the priority of the renderer among the renderers for the same diagram type. Lower values are tried first;
+	 * the next renderer is used when one fails.
+	 *
+	 * @return priority
+	 */
+	public int getPriority();
+
+}
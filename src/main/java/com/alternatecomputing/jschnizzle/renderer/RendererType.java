@@ -18,5 +18,5 @@ package com.alternatecomputing.jschnizzle.renderer;
 import java.io.Serializable;
 
 public enum RendererType implements Serializable {
-	yUML, WebSequence;
+	yUML, WebSequence, LocalYUML, LocalWebSequence;
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer;
+
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Thrown when a remote renderer is failing, overloaded, or answers with something other than a diagram. Such a
+ * failure says nothing about the script, so it is retried and may fall back to another renderer, but the script is
+ * not remembered as rejected.
+ */
+public class RendererUnavailableException extends RendererException {
+	private static final long serialVersionUID = -3581140720442467503L;
+
+	public RendererUnavailableException(String message) {
+		super(message);
+	}
+
+	public RendererUnavailableException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+	/**
+	 * return whether the failure was caused by the endpoint being slow, unreachable or failing, rather than by the
+	 * script
+	 *
+	 * @param t failure
+	 * @return whether the failure is transient
+	 */
+	public static boolean isTransient(Throwable t) {
+		for (; t != null; t = t.getCause()) {
+			if (t instanceof RendererUnavailableException || t instanceof IOException || t instanceof TimeoutException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
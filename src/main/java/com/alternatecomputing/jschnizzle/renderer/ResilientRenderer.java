@@ -0,0 +1,312 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer;
+
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alternatecomputing.jschnizzle.model.Diagram;
+import com.alternatecomputing.jschnizzle.model.DiagramStyle;
+import com.alternatecomputing.jschnizzle.model.DiagramType;
+import com.alternatecomputing.jschnizzle.renderer.util.CircuitBreaker;
+
+/**
+ * Renderer decorator that protects callers from a slow or unavailable remote renderer. Each attempt must finish within
+ * a deadline; failures caused by I/O problems, timeouts or a failing endpoint (see
+ * {@link RendererUnavailableException}) are retried with jittered exponential backoff; consecutive failures open a
+ * circuit breaker so that renders fail fast while the endpoint is down; and scripts the endpoint rejected are
+ * remembered for a while so they are not sent again, unless the diagram is flagged for a refresh.
+ * <p>
+ * Settings are read from the <code>jschnizzle.render.timeout</code>, <code>jschnizzle.render.retries</code>,
+ * <code>jschnizzle.render.backoff</code>, <code>jschnizzle.render.failureTtl</code>,
+ * <code>jschnizzle.render.attemptThreads</code>, <code>jschnizzle.breaker.failures</code> and
+ * <code>jschnizzle.breaker.openTime</code> system properties (times in milliseconds).
+ */
+public class ResilientRenderer extends AbstractRenderer {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ResilientRenderer.class);
+	private static final int MAX_KNOWN_BAD_SCRIPTS = 256;
+	private static final ExecutorService deadlineExecutor = createDeadlineExecutor();
+	private final Renderer delegate;
+	private final CircuitBreaker circuitBreaker;
+	private final long timeout = Long.getLong("jschnizzle.render.timeout", 45000).longValue();
+	private final int maxRetries = Integer.getInteger("jschnizzle.render.retries", 2).intValue();
+	private final long backoff = Long.getLong("jschnizzle.render.backoff", 500).longValue();
+	private final long failureTtl = Long.getLong("jschnizzle.render.failureTtl", 600000).longValue();
+	private final Random random = new Random();
+	private final Map<String, KnownFailure> knownBadScripts = new LinkedHashMap<String, KnownFailure>() {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, KnownFailure> eldest) {
+			return size() > MAX_KNOWN_BAD_SCRIPTS;
+		}
+	};
+	private final AtomicLong retries = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+	private final AtomicLong failFasts = new AtomicLong();
+	private final AtomicLong knownBadHits = new AtomicLong();
+
+	/**
+	 * constructor
+	 *
+	 * @param delegate remote renderer to protect
+	 */
+	public ResilientRenderer(Renderer delegate) {
+		this.delegate = delegate;
+		int failureThreshold = Integer.getInteger("jschnizzle.breaker.failures", 5).intValue();
+		long openTime = Long.getLong("jschnizzle.breaker.openTime", 30000).longValue();
+		this.circuitBreaker = new CircuitBreaker(delegate.getRendererType().toString(), failureThreshold, openTime);
+	}
+
+	public BufferedImage render(Diagram diagram) {
+		if (diagram.getScript() == null) {
+			throw new RendererException("no script defined.");
+		}
+		String key = RenderKey.forDiagram(getRendererType(), diagram);
+		if (diagram.nonBeanRefresh()) {
+			forgetFailure(key);
+		}
+		KnownFailure knownFailure = getKnownFailure(key);
+		if (knownFailure != null) {
+			knownBadHits.incrementAndGet();
+			throw new RendererException("diagram '" + diagram.getName() + "' was rejected by " + getRendererType() + " recently: " + knownFailure.message);
+		}
+		for (int attempt = 0;; attempt++) {
+			if (!circuitBreaker.allowRequest()) {
+				failFasts.incrementAndGet();
+				throw new RendererUnavailableException(getRendererType() + " is unavailable; not retrying for another " + ((circuitBreaker.getRemainingOpenMillis() + 999) / 1000) + "s.");
+			}
+			try {
+				BufferedImage image = attempt(diagram);
+				circuitBreaker.recordSuccess();
+				return image;
+			} catch (RendererException e) {
+				if (Thread.currentThread().isInterrupted()) {
+					// the render was cancelled; that says nothing about the endpoint or the script
+					circuitBreaker.recordAbandoned();
+					throw e;
+				}
+				if (!RendererUnavailableException.isTransient(e)) {
+					// the endpoint answered, but could not render this script
+					circuitBreaker.recordSuccess();
+					rememberFailure(key, e);
+					throw e;
+				}
+				circuitBreaker.recordFailure();
+				if (attempt >= maxRetries) {
+					throw e;
+				}
+				retries.incrementAndGet();
+				long delay = backoffDelay(attempt);
+				LOGGER.info("Render of diagram '" + diagram.getName() + "' failed (" + e.getMessage() + "); retrying in " + delay + "ms.");
+				try {
+					Thread.sleep(delay);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					throw new RendererException(ie);
+				}
+			}
+		}
+	}
+
+	/**
+	 * render a copy of the diagram within the deadline, so that an abandoned attempt cannot update the diagram later
+	 */
+	private BufferedImage attempt(Diagram diagram) {
+		final Diagram scratch = new Diagram();
+		scratch.setName(diagram.getName());
+		scratch.setType(diagram.getType());
+		scratch.setStyle(diagram.getStyle());
+		scratch.setScript(diagram.getScript());
+		Future<BufferedImage> future = deadlineExecutor.submit(new Callable<BufferedImage>() {
+			public BufferedImage call() throws Exception {
+				return delegate.render(scratch);
+			}
+		});
+		try {
+			BufferedImage image = future.get(timeout, TimeUnit.MILLISECONDS);
+			diagram.copyEncodedImage(scratch);
+			return image;
+		} catch (TimeoutException e) {
+			future.cancel(true);
+			timeouts.incrementAndGet();
+			throw new RendererException(getRendererType() + " did not respond within " + timeout + "ms.", e);
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new RendererException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RendererException) {
+				throw (RendererException) cause;
+			} else if (cause instanceof Exception) {
+				throw new RendererException((Exception) cause);
+			}
+			throw (Error) cause;
+		}
+	}
+
+	/**
+	 * create the executor that runs attempts under their deadline. It is bounded by the
+	 * <code>jschnizzle.render.attemptThreads</code> system property, which defaults to twice the number of render
+	 * threads so that attempts abandoned while blocked on a slow endpoint cannot starve new ones; beyond that, attempts
+	 * wait for a thread and their wait counts against their deadline.
+	 *
+	 * @return attempt executor
+	 */
+	private static ExecutorService createDeadlineExecutor() {
+		int renderThreads = Integer.getInteger("jschnizzle.render.threads", Math.max(4, Runtime.getRuntime().availableProcessors())).intValue();
+		int threads = Integer.getInteger("jschnizzle.render.attemptThreads", 2 * renderThreads).intValue();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "render-attempt-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	private long backoffDelay(int attempt) {
+		double jitter;
+		synchronized (random) {
+			jitter = 0.5 + random.nextDouble();
+		}
+		return (long) (backoff * (1L << Math.min(attempt, 10)) * jitter);
+	}
+
+	private KnownFailure getKnownFailure(String key) {
+		synchronized (knownBadScripts) {
+			KnownFailure failure = knownBadScripts.get(key);
+			if (failure != null && failure.expiresAt < System.currentTimeMillis()) {
+				knownBadScripts.remove(key);
+				return null;
+			}
+			return failure;
+		}
+	}
+
+	private void rememberFailure(String key, RendererException e) {
+		synchronized (knownBadScripts) {
+			knownBadScripts.put(key, new KnownFailure(String.valueOf(e.getMessage()), System.currentTimeMillis() + failureTtl));
+		}
+	}
+
+	private void forgetFailure(String key) {
+		synchronized (knownBadScripts) {
+			knownBadScripts.remove(key);
+		}
+	}
+
+	/**
+	 * forget all scripts remembered as rejected, e.g. after the remote endpoint has been upgraded
+	 */
+	public void clearKnownFailures() {
+		synchronized (knownBadScripts) {
+			knownBadScripts.clear();
+		}
+	}
+
+	public CircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	/**
+	 * return the number of attempts that were retried after a transient failure
+	 *
+	 * @return retry count
+	 */
+	public long getRetryCount() {
+		return retries.get();
+	}
+
+	/**
+	 * return the number of attempts abandoned because they exceeded the deadline
+	 *
+	 * @return timeout count
+	 */
+	public long getTimeoutCount() {
+		return timeouts.get();
+	}
+
+	/**
+	 * return the number of renders refused because the circuit breaker was open
+	 *
+	 * @return fail fast count
+	 */
+	public long getFailFastCount() {
+		return failFasts.get();
+	}
+
+	/**
+	 * return the number of renders refused because the script was recently rejected
+	 *
+	 * @return known bad script count
+	 */
+	public long getKnownBadCount() {
+		return knownBadHits.get();
+	}
+
+	@Override
+	public String toString() {
+		return circuitBreaker + "; " + retries + " retries, " + timeouts + " timeouts, " + failFasts + " fail fasts, " + knownBadHits + " known bad scripts";
+	}
+
+	public boolean canRender(Diagram diagram) {
+		return delegate.canRender(diagram);
+	}
+
+	public DiagramStyle[] getStylesForType(DiagramType diagramType) {
+		return delegate.getStylesForType(diagramType);
+	}
+
+	public RendererType getRendererType() {
+		return delegate.getRendererType();
+	}
+
+	/**
+	 * a script the remote endpoint rejected, remembered until it expires
+	 */
+	private static class KnownFailure {
+		private final String message;
+		private final long expiresAt;
+
+		private KnownFailure(String message, long expiresAt) {
+			this.message = message;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer;
+
+import com.alternatecomputing.jschnizzle.model.DiagramType;
+import com.alternatecomputing.jschnizzle.renderer.local.YUMLParser;
+
+/**
+ * Reduces a diagram script to a canonical form, so that edits which cannot change the rendered image (whitespace,
+ * comments, blank lines) do not cause a re-render. Two scripts of the same diagram type with the same canonical form
+ * always render identically.
+ */
+public abstract class ScriptCanonicalizer {
+	private static final ScriptCanonicalizer YUML = new YUMLCanonicalizer();
+	private static final ScriptCanonicalizer SEQUENCE = new SequenceCanonicalizer();
+
+	/**
+	 * return the canonicalizer for the given diagram type
+	 *
+	 * @param type diagram type
+	 * @return canonicalizer
+	 */
+	public static ScriptCanonicalizer forType(DiagramType type) {
+		return DiagramType.Sequence.equals(type) ? SEQUENCE : YUML;
+	}
+
+	/**
+	 * return whether the two scripts of the given diagram type render identically
+	 *
+	 * @param type diagram type
+	 * @param script1 first script, may be null
+	 * @param script2 second script, may be null
+	 * @return true if the scripts have the same canonical form
+	 */
+	public static boolean isEquivalent(DiagramType type, String script1, String script2) {
+		if (script1 == null || script2 == null) {
+			return script1 == script2;
+		}
+		ScriptCanonicalizer canonicalizer = forType(type);
+		return canonicalizer.canonicalize(script1).equals(canonicalizer.canonicalize(script2));
+	}
+
+	/**
+	 * return the canonical form of the given script
+	 *
+	 * @param script diagram script
+	 * @return canonical script
+	 */
+	public abstract String canonicalize(String script);
+
+	/**
+	 * yUML scripts are reduced to exactly the single-line DSL sent to the renderer
+	 */
+	private static class YUMLCanonicalizer extends ScriptCanonicalizer {
+		public String canonicalize(String script) {
+			return YUMLParser.preprocess(script);
+		}
+	}
+
+	/**
+	 * websequencediagrams scripts ignore indentation, trailing whitespace, blank lines and comments, except that blank
+	 * lines inside a multi-line note are part of the note text
+	 */
+	private static class SequenceCanonicalizer extends ScriptCanonicalizer {
+		public String canonicalize(String script) {
+			StringBuilder buffer = new StringBuilder(script.length());
+			boolean inNote = false;
+			for (String line : script.split("\r?\n")) {
+				String trimmed = line.trim();
+				if (inNote) {
+					inNote = !trimmed.equals("end note");
+				} else if (trimmed.length() == 0 || trimmed.startsWith("#")) {
+					continue;
+				} else if (trimmed.startsWith("note ") && trimmed.indexOf(':') < 0) {
+					inNote = true;
+				}
+				buffer.append(trimmed).append('\n');
+			}
+			return buffer.toString();
+		}
+	}
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alternatecomputing.jschnizzle.model.Diagram;
+import com.alternatecomputing.jschnizzle.model.DiagramStyle;
+import com.alternatecomputing.jschnizzle.model.DiagramType;
+
+/**
+ * Renderer decorator that collapses concurrent identical render requests into a single call to the wrapped renderer.
+ * The first request for a given render key does the work; requests for the same key that arrive while it is in
+ * flight wait for, and share, its result. Previews fly separately from other renders, so that cancelling a preview
+ * never interrupts a render that another request is waiting on.
+ */
+public class SingleFlightRenderer extends AbstractRenderer {
+	private static final Logger LOGGER = LoggerFactory.getLogger(SingleFlightRenderer.class);
+	private final Renderer delegate;
+	private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<String, Flight>();
+	private final AtomicLong collapsed = new AtomicLong();
+
+	/**
+	 * constructor
+	 *
+	 * @param delegate renderer performing the actual renders
+	 */
+	public SingleFlightRenderer(Renderer delegate) {
+		this.delegate = delegate;
+	}
+
+	public BufferedImage render(Diagram diagram) {
+		if (diagram.getScript() == null) {
+			throw new RendererException("no script defined.");
+		}
+		String key = RenderKey.forDiagram(getRendererType(), diagram);
+		if (diagram.nonBeanRefresh()) {
+			// a refresh must not share the result of a render that may have been served from the cache
+			key = "refresh:" + key;
+		} else if (diagram.nonBeanPreview()) {
+			// previews are interrupted as soon as the script is edited again
+			key = "preview:" + key;
+		}
+		Flight flight = new Flight();
+		Flight inFlight = flights.putIfAbsent(key, flight);
+		if (inFlight != null) {
+			collapsed.incrementAndGet();
+			LOGGER.debug("Joining in-flight render for diagram '" + diagram.getName() + "'.");
+			BufferedImage image = inFlight.join(diagram);
+			if (image != null) {
+				return image;
+			}
+			// the leading render was cancelled rather than failed; render the diagram for this request instead
+			return render(diagram);
+		}
+		try {
+			flight.image = delegate.render(diagram);
+			flight.rendered = diagram;
+			return flight.image;
+		} catch (RuntimeException e) {
+			flight.error = e;
+			flight.cancelled = Thread.currentThread().isInterrupted() || isInterruption(e);
+			throw e;
+		} finally {
+			if (flight.image == null && flight.error == null) {
+				flight.error = new RendererException("render of diagram '" + diagram.getName() + "' did not complete.");
+			}
+			flights.remove(key);
+			flight.latch.countDown();
+		}
+	}
+
+	private static boolean isInterruption(Throwable t) {
+		for (; t != null; t = t.getCause()) {
+			if (t instanceof InterruptedException || t instanceof CancellationException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * return the number of render requests that were satisfied by joining an identical in-flight request
+	 *
+	 * @return collapsed request count
+	 */
+	public long getCollapsedCount() {
+		return collapsed.get();
+	}
+
+	/**
+	 * return the number of distinct renders currently in flight
+	 *
+	 * @return in-flight render count
+	 */
+	public int getInFlightCount() {
+		return flights.size();
+	}
+
+	public boolean canRender(Diagram diagram) {
+		return delegate.canRender(diagram);
+	}
+
+	public DiagramStyle[] getStylesForType(DiagramType diagramType) {
+		return delegate.getStylesForType(diagramType);
+	}
+
+	public RendererType getRendererType() {
+		return delegate.getRendererType();
+	}
+
+	/**
+	 * a render in progress, and its outcome once complete
+	 */
+	private static class Flight {
+		private final CountDownLatch latch = new CountDownLatch(1);
+		private volatile BufferedImage image;
+		private volatile Diagram rendered;
+		private volatile RuntimeException error;
+		private volatile boolean cancelled;
+
+		/**
+		 * wait for the render to complete and share its outcome
+		 *
+		 * @return rendered image, or null if the render was cancelled and must be issued again
+		 */
+		private BufferedImage join(Diagram diagram) {
+			try {
+				latch.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RendererException(e);
+			}
+			if (cancelled) {
+				return null;
+			}
+			if (error != null) {
+				throw new RendererException(error);
+			}
+			diagram.copyEncodedImage(rendered);
+			return image;
+		}
+	}
+
+}
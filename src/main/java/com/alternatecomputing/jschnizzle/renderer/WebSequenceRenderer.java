@@ -16,34 +16,38 @@
 package com.alternatecomputing.jschnizzle.renderer;
 
 import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
-import java.net.URL;
-import java.net.URLConnection;
-import java.net.URLEncoder;
+
+import javax.imageio.ImageIO;
 
 import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
 
 import org.apache.batik.transcoder.TranscoderException;
-import org.apache.batik.transcoder.TranscoderInput;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.methods.GetMethod;
-import org.apache.commons.lang.StringUtils;
+import org.apache.commons.httpclient.methods.PostMethod;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.alternatecomputing.jschnizzle.model.Diagram;
 import com.alternatecomputing.jschnizzle.model.DiagramStyle;
 import com.alternatecomputing.jschnizzle.model.DiagramType;
-import com.alternatecomputing.jschnizzle.renderer.util.BufferedImageTranscoder;
+import com.alternatecomputing.jschnizzle.model.ImageFormat;
+import com.alternatecomputing.jschnizzle.model.ImagePayload;
+import com.alternatecomputing.jschnizzle.renderer.metrics.PhaseTimer;
+import com.alternatecomputing.jschnizzle.renderer.metrics.RenderMetrics;
+import com.alternatecomputing.jschnizzle.renderer.metrics.RenderPhase;
+import com.alternatecomputing.jschnizzle.renderer.util.ConcurrencyLimiter;
+import com.alternatecomputing.jschnizzle.renderer.util.HttpClientFactory;
+import com.alternatecomputing.jschnizzle.renderer.util.RemoteSVGSource;
+import com.alternatecomputing.jschnizzle.renderer.util.ResponseBody;
+import com.alternatecomputing.jschnizzle.util.ImageUtils;
 import com.alternatecomputing.jschnizzle.util.UIUtils;
 
-public class WebSequenceRenderer implements Renderer {
+public class WebSequenceRenderer extends AbstractRenderer {
 	private static final Logger LOGGER = LoggerFactory.getLogger(UIUtils.class);
 	private DiagramStyle[] styles = new DiagramStyle[]{
 			new DiagramStyle("Plain UML", "default"),
@@ -56,7 +60,14 @@ public class WebSequenceRenderer implements Renderer {
 			new DiagramStyle("Round Green", "roundgreen"),
 			new DiagramStyle("Napkin", "napkin")
 			};
-
+	private final boolean rasterPassThrough = Boolean.getBoolean("jschnizzle.render.rasterPassThrough");
+
+	/**
+	 * render the diagram. With the <code>jschnizzle.render.rasterPassThrough</code> system property set, the diagram
+	 * is fetched as a PNG for display and its SVG is only fetched when the encoded image is first needed.
+	 *
+	 * @see com.alternatecomputing.jschnizzle.renderer.Renderer#render(Diagram)
+	 */
 	public BufferedImage render(Diagram diagram) {
 		String script = diagram.getScript();
 		if (script == null) {
@@ -66,64 +77,122 @@ public class WebSequenceRenderer implements Renderer {
 		String style = diagram.getStyle().getValue();
 		String baseURL = getBaseURL();
 
+		// hold a permit of the endpoint's limiter for the HTTP exchange only, so that the limiter's latency samples do
+		// not include the time taken to decode or transcode the diagram
+		ConcurrencyLimiter limiter = ConcurrencyLimiter.forEndpoint(baseURL);
+		long started;
+		try {
+			started = limiter.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RendererException(e);
+		}
+		boolean failed = false;
+		JSONObject json;
+		String img;
+		ResponseBody body;
 		try {
-			// build parameter string
-			String data = "style=" + style + "&format=svg&message=" + URLEncoder.encode(script, "UTF-8");
+			HttpClient client = HttpClientFactory.getHttpClient();
 
 			// send the request
-			URL url = new URL(baseURL);
-			URLConnection conn = url.openConnection();
-			conn.setDoOutput(true);
-			OutputStreamWriter writer = new OutputStreamWriter(conn.getOutputStream());
-
-			// write parameters
-			writer.write(data);
-			writer.flush();
-
-			// get the response
-			StringBuffer answer = new StringBuffer();
-			BufferedReader reader = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-			String line;
-			while ((line = reader.readLine()) != null) {
-				answer.append(line);
+			PostMethod postMethod = new PostMethod(baseURL);
+			postMethod.addParameter("style", style);
+			postMethod.addParameter("format", rasterPassThrough ? "png" : "svg");
+			postMethod.addParameter("message", script);
+			String answer;
+			PhaseTimer postTimer = RenderMetrics.start(getRendererType(), RenderPhase.Post);
+			try {
+				int status = client.executeMethod(postMethod);
+				answer = postMethod.getResponseBodyAsString();
+				postTimer.stop(answer == null ? 0 : answer.length());
+				HttpClientFactory.checkStatus(getRendererType(), status);
+			} finally {
+				postTimer.close();
+				postMethod.releaseConnection();
+			}
+
+			PhaseTimer jsonTimer = RenderMetrics.start(getRendererType(), RenderPhase.Json);
+			try {
+				json = JSONObject.fromString(answer);
+				img = json.getString("img");
+				jsonTimer.stop(0);
+			} catch (RuntimeException e) {
+				// e.g. the HTML error page of a proxy
+				throw new RendererUnavailableException(getRendererType() + " did not answer with a rendered diagram.", e);
+			} finally {
+				jsonTimer.close();
 			}
-			writer.close();
-			reader.close();
-
-			JSONObject json = JSONObject.fromString(answer.toString());
-
-			HttpClient client = new HttpClient();
-            String proxyHost = System.getProperty("http.proxyHost");
-            String proxyPort = System.getProperty("http.proxyPort");
-            if (StringUtils.isNotBlank(proxyHost) && StringUtils.isNotBlank(proxyPort)) {
-                client.getHostConfiguration().setProxy(proxyHost, Integer.parseInt(proxyPort));
-            }
-			String getURI = baseURL + json.getString("img");
-			GetMethod getMethod = new GetMethod(getURI);
-			client.executeMethod(getMethod);
-			String svgContents = getMethod.getResponseBodyAsString();
-			getMethod.releaseConnection();
-			LOGGER.debug(svgContents);
-
-			diagram.setEncodedImage(svgContents);
-			TranscoderInput input = new TranscoderInput(new ByteArrayInputStream(svgContents.getBytes()));
-			BufferedImageTranscoder imageTranscoder = new BufferedImageTranscoder();
-		    imageTranscoder.transcode(input, null);
-
-		    // log any errors to the UI console
-		    JSONArray errors = json.getJSONArray("errors");
-		    for (int eIdx = 0; eIdx < errors.length(); ++eIdx) {
-		    	LOGGER.error("JSON error: " + errors.getString(eIdx));
-		    }
-		    return imageTranscoder.getBufferedImage();
 
+			String getURI = baseURL + img;
+			GetMethod getMethod = new GetMethod(getURI);
+			PhaseTimer getTimer = RenderMetrics.start(getRendererType(), RenderPhase.Get);
+			try {
+				int status = client.executeMethod(getMethod);
+				HttpClientFactory.checkImage(getRendererType(), getMethod, status);
+				body = ResponseBody.read(getMethod);
+				if (body.getLength() == 0) {
+					throw new RendererUnavailableException(getRendererType() + " returned an empty response for diagram '" + diagram.getName() + "'.");
+				}
+				getTimer.stop(body.getLength());
+			} finally {
+				getTimer.close();
+				getMethod.releaseConnection();
+			}
+		} catch (RendererUnavailableException e) {
+			failed = true;
+			throw e;
 		} catch (MalformedURLException e) {
 			throw new RendererException(e);
 		} catch (IOException e) {
+			failed = true;
 			throw new RendererException(e);
-		} catch (TranscoderException e) {
-			throw new RendererException(e);
+		} finally {
+			limiter.release(started, failed);
+		}
+
+		BufferedImage image;
+		if (rasterPassThrough) {
+			PhaseTimer decodeTimer = RenderMetrics.start(getRendererType(), RenderPhase.Decode);
+			try {
+				image = ImageIO.read(body.openStream());
+				decodeTimer.stop(body.getLength());
+			} catch (IOException e) {
+				image = null;
+			} finally {
+				decodeTimer.close();
+			}
+			if (image == null) {
+				throw new RendererUnavailableException(getRendererType() + " did not return a PNG image for diagram '" + diagram.getName() + "'.");
+			}
+			// the same render is served as SVG when asked for by its svg key
+			String svgURI = baseURL + img.replaceFirst("png=", "svg=");
+			diagram.nonBeanEncodedImageSource(new RemoteSVGSource(getRendererType(), svgURI));
+		} else {
+			// transcode and compress straight from the response buffer
+			PhaseTimer transcodeTimer = RenderMetrics.start(getRendererType(), RenderPhase.Transcode);
+			try {
+				image = ImageUtils.transcodeSVG(body.openStream());
+				transcodeTimer.stop(body.getLength());
+				if (LOGGER.isDebugEnabled()) {
+					LOGGER.debug(body.getText());
+				}
+				diagram.nonBeanPayload(new ImagePayload(ImageFormat.SVG, body.toCompressedText()));
+			} catch (UnsupportedEncodingException e) {
+				throw new RendererException(e);
+			} catch (TranscoderException e) {
+				// the endpoint answered with something that is not a diagram
+				throw new RendererUnavailableException(getRendererType() + " did not return an SVG image for diagram '" + diagram.getName() + "'.", e);
+			} finally {
+				transcodeTimer.close();
+			}
+		}
+
+		// log any errors to the UI console
+		JSONArray errors = json.getJSONArray("errors");
+		for (int eIdx = 0; eIdx < errors.length(); ++eIdx) {
+			LOGGER.error("JSON error: " + errors.getString(eIdx));
 		}
+		return image;
 	}
 
 	public boolean canRender(Diagram diagram) {
@@ -134,6 +203,10 @@ public class WebSequenceRenderer implements Renderer {
 		return styles;
 	}
 
+	public RendererType getRendererType() {
+		return RendererType.WebSequence;
+	}
+
 	private String getBaseURL() {
 		String baseURL = System.getProperty("websequence.url");
 		if (baseURL == null) {
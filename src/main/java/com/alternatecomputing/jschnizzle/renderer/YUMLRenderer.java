@@ -16,92 +16,161 @@
 package com.alternatecomputing.jschnizzle.renderer;
 
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
-import java.util.StringTokenizer;
+import java.util.regex.Pattern;
+
+import javax.imageio.ImageIO;
 
 import org.apache.batik.transcoder.TranscoderException;
-import org.apache.batik.transcoder.TranscoderInput;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.httpclient.methods.PostMethod;
-import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.alternatecomputing.jschnizzle.model.Diagram;
 import com.alternatecomputing.jschnizzle.model.DiagramStyle;
 import com.alternatecomputing.jschnizzle.model.DiagramType;
-import com.alternatecomputing.jschnizzle.renderer.util.BufferedImageTranscoder;
+import com.alternatecomputing.jschnizzle.model.ImageFormat;
+import com.alternatecomputing.jschnizzle.model.ImagePayload;
+import com.alternatecomputing.jschnizzle.renderer.local.YUMLParser;
+import com.alternatecomputing.jschnizzle.renderer.metrics.PhaseTimer;
+import com.alternatecomputing.jschnizzle.renderer.metrics.RenderMetrics;
+import com.alternatecomputing.jschnizzle.renderer.metrics.RenderPhase;
+import com.alternatecomputing.jschnizzle.renderer.util.ConcurrencyLimiter;
+import com.alternatecomputing.jschnizzle.renderer.util.HttpClientFactory;
+import com.alternatecomputing.jschnizzle.renderer.util.RemoteSVGSource;
+import com.alternatecomputing.jschnizzle.renderer.util.ResponseBody;
+import com.alternatecomputing.jschnizzle.util.ImageUtils;
 
-public class YUMLRenderer implements Renderer {
+public class YUMLRenderer extends AbstractRenderer {
 	private static final Logger LOGGER = LoggerFactory.getLogger(YUMLRenderer.class);
 	private DiagramStyle[] styles = new DiagramStyle[] {
 			new DiagramStyle("Boring", "nofunky;"),
 			new DiagramStyle("Plain", "plain;"),
 			new DiagramStyle("Scruffy", "scruffy;")
 			};
+	private static final Pattern RESOURCE_NAME = Pattern.compile("[^\\s<>]+\\.(png|svg)");
+	private final boolean rasterPassThrough = Boolean.getBoolean("jschnizzle.render.rasterPassThrough");
 
+	/**
+	 * render the diagram. With the <code>jschnizzle.render.rasterPassThrough</code> system property set, the diagram
+	 * is fetched as a PNG for display and its SVG is only fetched when the encoded image is first needed.
+	 *
+	 * @see com.alternatecomputing.jschnizzle.renderer.Renderer#render(Diagram)
+	 */
 	public BufferedImage render(Diagram diagram) {
 		String script = diagram.getScript();
 		if (script == null) {
 			throw new RendererException("no script defined.");
 		}
-		StringTokenizer st = new StringTokenizer(script.trim(), "\n");
-		StringBuilder buffer = new StringBuilder();
-		while (st.hasMoreTokens()) {
-			String token = st.nextToken();
-			if (token.startsWith("#")) {
-				continue; // skip over comments
-			}
-			buffer.append(token.trim());
-			if (st.hasMoreTokens()) {
-				buffer.append(", ");
-			}
-		}
-		buffer.append(".svg");
+		StringBuilder buffer = new StringBuilder(YUMLParser.preprocess(script));
+		buffer.append(rasterPassThrough ? ".png" : ".svg");
 
 		String style = diagram.getStyle().getValue();
 		String baseURL = getBaseURL();
+		// hold a permit of the endpoint's limiter for the HTTP exchange only, so that the limiter's latency samples do
+		// not include the time taken to decode or transcode the diagram
+		ConcurrencyLimiter limiter = ConcurrencyLimiter.forEndpoint(baseURL);
+		long started;
 		try {
-			HttpClient client = new HttpClient();
-            String proxyHost = System.getProperty("http.proxyHost");
-            String proxyPort = System.getProperty("http.proxyPort");
-            if (StringUtils.isNotBlank(proxyHost) && StringUtils.isNotBlank(proxyPort)) {
-                client.getHostConfiguration().setProxy(proxyHost, Integer.parseInt(proxyPort));
-            }
-
+			started = limiter.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RendererException(e);
+		}
+		boolean failed = false;
+		String resourceName;
+		ResponseBody body;
+		try {
+			HttpClient client = HttpClientFactory.getHttpClient();
 			String postURI = baseURL + "diagram/" + style + "/" + diagram.getType().getUrlModifier() + "/";
 			LOGGER.debug(postURI);
 			PostMethod postMethod = new PostMethod(postURI );
 			postMethod.addParameter("dsl_text", buffer.toString());
-			client.executeMethod( postMethod );
-			String svgResourceName = postMethod.getResponseBodyAsString();
-			postMethod.releaseConnection();
-			LOGGER.debug(svgResourceName);
+			PhaseTimer postTimer = RenderMetrics.start(getRendererType(), RenderPhase.Post);
+			try {
+				int status = client.executeMethod(postMethod);
+				resourceName = postMethod.getResponseBodyAsString();
+				postTimer.stop(resourceName == null ? 0 : resourceName.length());
+				HttpClientFactory.checkStatus(getRendererType(), status);
+			} finally {
+				postTimer.close();
+				postMethod.releaseConnection();
+			}
+			LOGGER.debug(resourceName);
+			if (resourceName == null || !RESOURCE_NAME.matcher(resourceName = resourceName.trim()).matches()) {
+				throw new RendererUnavailableException(getRendererType() + " did not answer with the name of a rendered diagram.");
+			}
 
-			String getURI = baseURL + svgResourceName;
+			String getURI = baseURL + resourceName;
 			LOGGER.debug(getURI);
 			GetMethod getMethod = new GetMethod(getURI);
-			client.executeMethod(getMethod);
-			String svgContents = getMethod.getResponseBodyAsString();
-			getMethod.releaseConnection();
-			LOGGER.debug(svgContents);
-
-			diagram.setEncodedImage(svgContents);
-			TranscoderInput input = new TranscoderInput(new ByteArrayInputStream(svgContents.getBytes()));
-			BufferedImageTranscoder imageTranscoder = new BufferedImageTranscoder();
-		    imageTranscoder.transcode(input, null);
-
-		    return imageTranscoder.getBufferedImage();
+			PhaseTimer getTimer = RenderMetrics.start(getRendererType(), RenderPhase.Get);
+			try {
+				int status = client.executeMethod(getMethod);
+				HttpClientFactory.checkImage(getRendererType(), getMethod, status);
+				body = ResponseBody.read(getMethod);
+				if (body.getLength() == 0) {
+					throw new RendererUnavailableException(getRendererType() + " returned an empty response for diagram '" + diagram.getName() + "'.");
+				}
+				getTimer.stop(body.getLength());
+			} finally {
+				getTimer.close();
+				getMethod.releaseConnection();
+			}
+		} catch (RendererUnavailableException e) {
+			failed = true;
+			throw e;
 		} catch (MalformedURLException e) {
 			throw new RendererException(e);
 		} catch (IOException e) {
+			failed = true;
 			throw new RendererException(e);
-		} catch (TranscoderException e) {
+		} finally {
+			limiter.release(started, failed);
+		}
+
+		if (rasterPassThrough) {
+			BufferedImage image;
+			PhaseTimer decodeTimer = RenderMetrics.start(getRendererType(), RenderPhase.Decode);
+			try {
+				image = ImageIO.read(body.openStream());
+				decodeTimer.stop(body.getLength());
+			} catch (IOException e) {
+				image = null;
+			} finally {
+				decodeTimer.close();
+			}
+			if (image == null) {
+				throw new RendererUnavailableException(getRendererType() + " did not return a PNG image for diagram '" + diagram.getName() + "'.");
+			}
+			// yuml.me serves the same diagram as SVG under the same name
+			String svgURI = baseURL + resourceName.replaceFirst("\\.png$", ".svg");
+			diagram.nonBeanEncodedImageSource(new RemoteSVGSource(getRendererType(), svgURI));
+			return image;
+		}
+		// transcode and compress straight from the response buffer
+		BufferedImage image;
+		PhaseTimer transcodeTimer = RenderMetrics.start(getRendererType(), RenderPhase.Transcode);
+		try {
+			image = ImageUtils.transcodeSVG(body.openStream());
+			transcodeTimer.stop(body.getLength());
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug(body.getText());
+			}
+			diagram.nonBeanPayload(new ImagePayload(ImageFormat.SVG, body.toCompressedText()));
+		} catch (UnsupportedEncodingException e) {
 			throw new RendererException(e);
+		} catch (TranscoderException e) {
+			// the endpoint answered with something that is not a diagram
+			throw new RendererUnavailableException(getRendererType() + " did not return an SVG image for diagram '" + diagram.getName() + "'.", e);
+		} finally {
+			transcodeTimer.close();
 		}
+		return image;
 	}
 
 	public boolean canRender(Diagram diagram) {
@@ -113,6 +182,10 @@ public class YUMLRenderer implements Renderer {
 		return styles;
 	}
 
+	public RendererType getRendererType() {
+		return RendererType.yUML;
+	}
+
 	private String getBaseURL() {
 		String baseURL = System.getProperty("yuml.url");
 		if (baseURL == null) {
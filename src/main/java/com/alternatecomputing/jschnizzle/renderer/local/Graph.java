@@ -0,0 +1,137 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer.local;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Graph of nodes and edges parsed from a yUML script
+ */
+public class Graph {
+	private final List<Node> nodes = new ArrayList<Node>();
+	private final Map<String, Node> nodesById = new HashMap<String, Node>();
+	private final List<Edge> edges = new ArrayList<Edge>();
+
+	/**
+	 * Node shapes
+	 */
+	public enum Shape {
+		Class, Note, Actor, UseCase, Activity, Start, End, Decision, Bar
+	}
+
+	/**
+	 * Decorations drawn where an edge meets a node
+	 */
+	public enum Head {
+		None, Arrow, Triangle, OpenDiamond, FilledDiamond
+	}
+
+	/**
+	 * return the node with the given id, adding it if it does not exist yet. Compartments and fill from a later, more
+	 * detailed reference to the same node are merged into the existing node.
+	 *
+	 * @param shape node shape
+	 * @param id node id
+	 * @param compartments node text compartments
+	 * @param fill node fill color, or null
+	 * @return node
+	 */
+	public Node addNode(Shape shape, String id, List<List<String>> compartments, String fill) {
+		String key = shape + ":" + id;
+		Node node = nodesById.get(key);
+		if (node == null) {
+			node = new Node(shape, id, compartments, fill);
+			nodesById.put(key, node);
+			nodes.add(node);
+		} else {
+			if (compartments.size() > node.compartments.size()) {
+				node.compartments = compartments;
+			}
+			if (fill != null) {
+				node.fill = fill;
+			}
+		}
+		return node;
+	}
+
+	public Edge addEdge(Node from, Node to) {
+		Edge edge = new Edge(from, to);
+		edges.add(edge);
+		return edge;
+	}
+
+	public List<Node> getNodes() {
+		return nodes;
+	}
+
+	public List<Edge> getEdges() {
+		return edges;
+	}
+
+	/**
+	 * Graph node, with its layout position once laid out
+	 */
+	public static class Node {
+		final Shape shape;
+		final String id;
+		List<List<String>> compartments;
+		String fill;
+		double x;
+		double y;
+		double width;
+		double height;
+		int layer;
+		double order;
+
+		Node(Shape shape, String id, List<List<String>> compartments, String fill) {
+			this.shape = shape;
+			this.id = id;
+			this.compartments = compartments;
+			this.fill = fill;
+		}
+
+		double centerX() {
+			return x + width / 2;
+		}
+
+		double centerY() {
+			return y + height / 2;
+		}
+	}
+
+	/**
+	 * Graph edge
+	 */
+	public static class Edge {
+		final Node from;
+		final Node to;
+		Head fromHead = Head.None;
+		Head toHead = Head.None;
+		String fromLabel = "";
+		String toLabel = "";
+		String label = "";
+		boolean dashed;
+
+		Edge(Node from, Node to) {
+			this.from = from;
+			this.to = to;
+		}
+	}
+
+}
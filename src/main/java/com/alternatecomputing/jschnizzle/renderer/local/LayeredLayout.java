@@ -0,0 +1,273 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer.local;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.alternatecomputing.jschnizzle.renderer.local.Graph.Edge;
+import com.alternatecomputing.jschnizzle.renderer.local.Graph.Node;
+
+/**
+ * Simple layered graph layout. Nodes are assigned to layers by longest path along the edges (ignoring edges that
+ * close a cycle), ordered within each layer by the barycenter heuristic, and then placed row by row (top to bottom)
+ * or column by column (left to right). Node sizes must be set before laying out.
+ */
+public class LayeredLayout {
+	private static final double LAYER_GAP = 50;
+	private static final double NODE_GAP = 30;
+	private static final double MARGIN = 15;
+	private static final int ORDERING_SWEEPS = 4;
+	private final boolean leftToRight;
+	private double width;
+	private double height;
+
+	/**
+	 * constructor
+	 *
+	 * @param leftToRight whether layers run left to right rather than top to bottom
+	 */
+	public LayeredLayout(boolean leftToRight) {
+		this.leftToRight = leftToRight;
+	}
+
+	/**
+	 * position the nodes of the given graph
+	 *
+	 * @param graph graph to lay out
+	 */
+	public void layout(Graph graph) {
+		List<Node> nodes = graph.getNodes();
+		Set<Edge> forward = findForwardEdges(graph);
+		assignLayers(nodes, forward);
+		List<List<Node>> layers = buildLayers(nodes);
+		orderLayers(layers, forward);
+		place(layers, layerGaps(layers.size(), graph.getEdges()));
+	}
+
+	public double getWidth() {
+		return width;
+	}
+
+	public double getHeight() {
+		return height;
+	}
+
+	/**
+	 * find the edges that do not close a cycle, using a depth-first search in declaration order
+	 */
+	private Set<Edge> findForwardEdges(Graph graph) {
+		Map<Node, List<Edge>> outgoing = new HashMap<Node, List<Edge>>();
+		for (Edge edge : graph.getEdges()) {
+			List<Edge> edges = outgoing.get(edge.from);
+			if (edges == null) {
+				edges = new ArrayList<Edge>();
+				outgoing.put(edge.from, edges);
+			}
+			edges.add(edge);
+		}
+		Set<Edge> forward = new HashSet<Edge>();
+		Set<Node> visited = new HashSet<Node>();
+		Set<Node> onStack = new HashSet<Node>();
+		for (Node node : graph.getNodes()) {
+			if (!visited.contains(node)) {
+				visit(node, outgoing, visited, onStack, forward);
+			}
+		}
+		return forward;
+	}
+
+	/**
+	 * depth-first search from the given node, with an explicit stack so that long chains cannot overflow the thread's
+	 * stack
+	 */
+	private void visit(Node start, Map<Node, List<Edge>> outgoing, Set<Node> visited, Set<Node> onStack, Set<Edge> forward) {
+		Deque<Node> path = new ArrayDeque<Node>();
+		Deque<Iterator<Edge>> pending = new ArrayDeque<Iterator<Edge>>();
+		visited.add(start);
+		onStack.add(start);
+		path.push(start);
+		pending.push(edgesFrom(start, outgoing));
+		while (!path.isEmpty()) {
+			Iterator<Edge> edges = pending.peek();
+			if (!edges.hasNext()) {
+				onStack.remove(path.pop());
+				pending.pop();
+				continue;
+			}
+			Edge edge = edges.next();
+			if (edge.to == edge.from || onStack.contains(edge.to)) {
+				continue; // back edge
+			}
+			forward.add(edge);
+			if (!visited.contains(edge.to)) {
+				visited.add(edge.to);
+				onStack.add(edge.to);
+				path.push(edge.to);
+				pending.push(edgesFrom(edge.to, outgoing));
+			}
+		}
+	}
+
+	private static Iterator<Edge> edgesFrom(Node node, Map<Node, List<Edge>> outgoing) {
+		List<Edge> edges = outgoing.get(node);
+		return edges == null ? Collections.<Edge> emptyList().iterator() : edges.iterator();
+	}
+
+	private void assignLayers(List<Node> nodes, Set<Edge> forward) {
+		for (Node node : nodes) {
+			node.layer = 0;
+		}
+		// longest path over an acyclic edge set converges within nodes.size() passes
+		boolean changed = true;
+		for (int pass = 0; changed && pass < nodes.size(); pass++) {
+			changed = false;
+			for (Edge edge : forward) {
+				if (edge.to.layer < edge.from.layer + 1) {
+					edge.to.layer = edge.from.layer + 1;
+					changed = true;
+				}
+			}
+		}
+	}
+
+	private List<List<Node>> buildLayers(List<Node> nodes) {
+		List<List<Node>> layers = new ArrayList<List<Node>>();
+		for (Node node : nodes) {
+			while (layers.size() <= node.layer) {
+				layers.add(new ArrayList<Node>());
+			}
+			List<Node> layer = layers.get(node.layer);
+			node.order = layer.size();
+			layer.add(node);
+		}
+		return layers;
+	}
+
+	private void orderLayers(List<List<Node>> layers, Set<Edge> forward) {
+		Map<Node, List<Node>> up = new HashMap<Node, List<Node>>();
+		Map<Node, List<Node>> down = new HashMap<Node, List<Node>>();
+		for (Edge edge : forward) {
+			neighbours(down, edge.from).add(edge.to);
+			neighbours(up, edge.to).add(edge.from);
+		}
+		for (int sweep = 0; sweep < ORDERING_SWEEPS; sweep++) {
+			if (sweep % 2 == 0) {
+				for (int i = 1; i < layers.size(); i++) {
+					reorder(layers.get(i), up);
+				}
+			} else {
+				for (int i = layers.size() - 2; i >= 0; i--) {
+					reorder(layers.get(i), down);
+				}
+			}
+		}
+	}
+
+	private static List<Node> neighbours(Map<Node, List<Node>> map, Node node) {
+		List<Node> list = map.get(node);
+		if (list == null) {
+			list = new ArrayList<Node>();
+			map.put(node, list);
+		}
+		return list;
+	}
+
+	private void reorder(List<Node> layer, Map<Node, List<Node>> adjacent) {
+		final Map<Node, Double> barycenters = new HashMap<Node, Double>();
+		for (Node node : layer) {
+			List<Node> list = adjacent.get(node);
+			double barycenter = node.order;
+			if (list != null && !list.isEmpty()) {
+				double sum = 0;
+				for (Node neighbour : list) {
+					sum += neighbour.order;
+				}
+				barycenter = sum / list.size();
+			}
+			barycenters.put(node, Double.valueOf(barycenter));
+		}
+		Collections.sort(layer, new Comparator<Node>() {
+			public int compare(Node n1, Node n2) {
+				return barycenters.get(n1).compareTo(barycenters.get(n2));
+			}
+		});
+		for (int i = 0; i < layer.size(); i++) {
+			layer.get(i).order = i;
+		}
+	}
+
+	/**
+	 * return the gap following each layer; in left to right layouts the gap is widened to fit edge labels
+	 */
+	private double[] layerGaps(int layerCount, List<Edge> edges) {
+		double[] gaps = new double[layerCount];
+		Arrays.fill(gaps, LAYER_GAP);
+		if (leftToRight) {
+			for (Edge edge : edges) {
+				int layer = Math.min(edge.from.layer, edge.to.layer);
+				double labels = SVGBuilder.textWidth(edge.label, false) + SVGBuilder.textWidth(edge.fromLabel, false) + SVGBuilder.textWidth(edge.toLabel, false);
+				gaps[layer] = Math.max(gaps[layer], labels + LAYER_GAP);
+			}
+		}
+		return gaps;
+	}
+
+	private void place(List<List<Node>> layers, double[] gaps) {
+		double[] breadths = new double[layers.size()];
+		double[] depths = new double[layers.size()];
+		double maxBreadth = 0;
+		for (int i = 0; i < layers.size(); i++) {
+			for (Node node : layers.get(i)) {
+				breadths[i] += (leftToRight ? node.height : node.width) + NODE_GAP;
+				depths[i] = Math.max(depths[i], leftToRight ? node.width : node.height);
+			}
+			breadths[i] -= NODE_GAP;
+			maxBreadth = Math.max(maxBreadth, breadths[i]);
+		}
+		double depthOffset = MARGIN;
+		for (int i = 0; i < layers.size(); i++) {
+			double breadthOffset = MARGIN + (maxBreadth - breadths[i]) / 2;
+			for (Node node : layers.get(i)) {
+				if (leftToRight) {
+					node.x = depthOffset + (depths[i] - node.width) / 2;
+					node.y = breadthOffset;
+					breadthOffset += node.height + NODE_GAP;
+				} else {
+					node.x = breadthOffset;
+					node.y = depthOffset + (depths[i] - node.height) / 2;
+					breadthOffset += node.width + NODE_GAP;
+				}
+			}
+			depthOffset += depths[i] + gaps[i];
+		}
+		double totalDepth = depthOffset - (layers.isEmpty() ? 0 : gaps[layers.size() - 1]) + MARGIN;
+		double totalBreadth = maxBreadth + 2 * MARGIN;
+		width = leftToRight ? totalDepth : totalBreadth;
+		height = leftToRight ? totalBreadth : totalDepth;
+	}
+
+}
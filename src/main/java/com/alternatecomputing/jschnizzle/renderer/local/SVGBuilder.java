@@ -0,0 +1,205 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer.local;
+
+import java.util.Random;
+
+/**
+ * Minimal builder for the SVG documents produced by the local renderers. In "scruffy" mode lines and boxes are drawn
+ * with a small, repeatable wobble to give a hand-drawn look.
+ */
+public class SVGBuilder {
+	public static final double FONT_SIZE = 12;
+	public static final double LINE_HEIGHT = 16;
+	private final StringBuilder body = new StringBuilder(4096);
+	private final boolean scruffy;
+	private final String fontFamily;
+	private final Random random;
+
+	/**
+	 * constructor
+	 *
+	 * @param scruffy whether to draw with a hand-drawn look
+	 * @param seed seed for the hand-drawn wobble, so the same input always produces the same output
+	 */
+	public SVGBuilder(boolean scruffy, long seed) {
+		this.scruffy = scruffy;
+		this.fontFamily = scruffy ? "'Comic Sans MS', 'Purisa', cursive" : "Helvetica, Arial, sans-serif";
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * estimate the rendered width of the given text
+	 *
+	 * @param text text
+	 * @param bold whether the text is bold
+	 * @return estimated width in pixels
+	 */
+	public static double textWidth(String text, boolean bold) {
+		return text.length() * FONT_SIZE * (bold ? 0.65 : 0.58);
+	}
+
+	public void rect(double x, double y, double w, double h, double radius, String fill, boolean dashed) {
+		if (scruffy) {
+			path(wobble(new double[] { x, y, x + w, y, x + w, y + h, x, y + h }, true), fill, dashed);
+			return;
+		}
+		body.append("<rect x=\"").append(num(x)).append("\" y=\"").append(num(y)).append("\" width=\"").append(num(w)).append("\" height=\"").append(num(h)).append('"');
+		if (radius > 0) {
+			body.append(" rx=\"").append(num(radius)).append("\" ry=\"").append(num(radius)).append('"');
+		}
+		style(fill, dashed);
+		body.append("/>\n");
+	}
+
+	public void ellipse(double cx, double cy, double rx, double ry, String fill) {
+		body.append("<ellipse cx=\"").append(num(cx)).append("\" cy=\"").append(num(cy)).append("\" rx=\"").append(num(rx)).append("\" ry=\"").append(num(ry)).append('"');
+		style(fill, false);
+		body.append("/>\n");
+	}
+
+	public void line(double x1, double y1, double x2, double y2, boolean dashed) {
+		if (scruffy) {
+			path(wobble(new double[] { x1, y1, x2, y2 }, false), "none", dashed);
+			return;
+		}
+		body.append("<line x1=\"").append(num(x1)).append("\" y1=\"").append(num(y1)).append("\" x2=\"").append(num(x2)).append("\" y2=\"").append(num(y2)).append('"');
+		style("none", dashed);
+		body.append("/>\n");
+	}
+
+	public void polygon(double[] points, String fill) {
+		body.append("<polygon points=\"");
+		for (int i = 0; i < points.length; i += 2) {
+			if (i > 0) {
+				body.append(' ');
+			}
+			body.append(num(points[i])).append(',').append(num(points[i + 1]));
+		}
+		body.append('"');
+		style(fill, false);
+		body.append("/>\n");
+	}
+
+	public void text(double x, double y, String text, String anchor, boolean bold, boolean italic) {
+		body.append("<text x=\"").append(num(x)).append("\" y=\"").append(num(y)).append("\" text-anchor=\"").append(anchor).append('"');
+		body.append(" font-family=\"").append(fontFamily).append("\" font-size=\"").append(num(FONT_SIZE)).append('"');
+		if (bold) {
+			body.append(" font-weight=\"bold\"");
+		}
+		if (italic) {
+			body.append(" font-style=\"italic\"");
+		}
+		body.append(" fill=\"black\">").append(escape(text)).append("</text>\n");
+	}
+
+	/**
+	 * append the elements drawn by another builder, so that they appear above everything drawn so far
+	 *
+	 * @param other builder to append
+	 */
+	public void append(SVGBuilder other) {
+		body.append(other.body);
+	}
+
+	/**
+	 * return the finished SVG document
+	 *
+	 * @param width document width
+	 * @param height document height
+	 * @return SVG document
+	 */
+	public String toSVG(double width, double height) {
+		StringBuilder svg = new StringBuilder(body.length() + 512);
+		svg.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n");
+		svg.append("<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\" width=\"").append(num(Math.ceil(width))).append("\" height=\"").append(num(Math.ceil(height)));
+		svg.append("\" viewBox=\"0 0 ").append(num(Math.ceil(width))).append(' ').append(num(Math.ceil(height))).append("\">\n");
+		svg.append("<rect x=\"0\" y=\"0\" width=\"100%\" height=\"100%\" fill=\"white\"/>\n");
+		svg.append(body);
+		svg.append("</svg>\n");
+		return svg.toString();
+	}
+
+	private void path(String d, String fill, boolean dashed) {
+		body.append("<path d=\"").append(d).append('"');
+		style(fill, dashed);
+		body.append("/>\n");
+	}
+
+	private String wobble(double[] points, boolean closed) {
+		StringBuilder d = new StringBuilder();
+		int n = points.length / 2;
+		int segments = closed ? n : n - 1;
+		d.append('M').append(num(points[0] + jitter())).append(',').append(num(points[1] + jitter()));
+		for (int i = 1; i <= segments; i++) {
+			int j = i % n;
+			double px = points[(i - 1) * 2];
+			double py = points[(i - 1) * 2 + 1];
+			double qx = points[j * 2];
+			double qy = points[j * 2 + 1];
+			d.append(" Q").append(num((px + qx) / 2 + jitter() * 1.5)).append(',').append(num((py + qy) / 2 + jitter() * 1.5));
+			d.append(' ').append(num(qx + jitter())).append(',').append(num(qy + jitter()));
+		}
+		if (closed) {
+			d.append(" Z");
+		}
+		return d.toString();
+	}
+
+	private double jitter() {
+		return random.nextGaussian() * 0.8;
+	}
+
+	private void style(String fill, boolean dashed) {
+		body.append(" fill=\"").append(escape(fill)).append("\" stroke=\"black\" stroke-width=\"").append(scruffy ? "1.5" : "1").append('"');
+		if (dashed) {
+			body.append(" stroke-dasharray=\"6,4\"");
+		}
+	}
+
+	private static String num(double value) {
+		long rounded = Math.round(value * 10);
+		if (rounded % 10 == 0) {
+			return Long.toString(rounded / 10);
+		}
+		return Double.toString(rounded / 10.0);
+	}
+
+	private static String escape(String text) {
+		StringBuilder escaped = new StringBuilder(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+				case '<':
+					escaped.append("&lt;");
+					break;
+				case '>':
+					escaped.append("&gt;");
+					break;
+				case '&':
+					escaped.append("&amp;");
+					break;
+				case '"':
+					escaped.append("&quot;");
+					break;
+				default:
+					escaped.append(c);
+			}
+		}
+		return escaped.toString();
+	}
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer.local;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Participants and events parsed from a websequencediagrams script
+ */
+public class SequenceDiagram {
+	private final List<Participant> participants = new ArrayList<Participant>();
+	private final Map<String, Participant> participantsByName = new HashMap<String, Participant>();
+	private final List<Event> events = new ArrayList<Event>();
+	String title;
+
+	/**
+	 * Event kinds, in the order they appear in the script
+	 */
+	public enum Kind {
+		Message, Note, GroupStart, GroupElse, GroupEnd, Activate, Deactivate, Destroy
+	}
+
+	/**
+	 * Note placement relative to its participants
+	 */
+	public enum Placement {
+		LeftOf, RightOf, Over
+	}
+
+	/**
+	 * return the participant with the given name, adding it if it does not exist yet
+	 *
+	 * @param name participant name, as used in messages
+	 * @return participant
+	 */
+	public Participant getParticipant(String name) {
+		Participant participant = participantsByName.get(name);
+		if (participant == null) {
+			participant = new Participant(name, participants.size());
+			participantsByName.put(name, participant);
+			participants.add(participant);
+		}
+		return participant;
+	}
+
+	public Event addEvent(Kind kind) {
+		Event event = new Event(kind);
+		events.add(event);
+		return event;
+	}
+
+	public List<Participant> getParticipants() {
+		return participants;
+	}
+
+	public List<Event> getEvents() {
+		return events;
+	}
+
+	/**
+	 * Diagram participant, drawn as a box (or stick figure) with a lifeline
+	 */
+	public static class Participant {
+		final String name;
+		final int index;
+		String label;
+		boolean actor;
+		double x;
+		double width;
+
+		Participant(String name, int index) {
+			this.name = name;
+			this.index = index;
+			this.label = name;
+		}
+	}
+
+	/**
+	 * Diagram event. Messages and notes use <code>from</code> and <code>to</code>; groups use <code>text</code> for
+	 * their label; activations and destroys use <code>from</code>.
+	 */
+	public static class Event {
+		final Kind kind;
+		Participant from;
+		Participant to;
+		String text = "";
+		boolean dashed;
+		boolean open;
+		boolean activateTarget;
+		boolean deactivateSource;
+		Placement placement;
+
+		Event(Kind kind) {
+			this.kind = kind;
+		}
+	}
+
+}
@@ -0,0 +1,467 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer.local;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import com.alternatecomputing.jschnizzle.renderer.local.SequenceDiagram.Event;
+import com.alternatecomputing.jschnizzle.renderer.local.SequenceDiagram.Kind;
+import com.alternatecomputing.jschnizzle.renderer.local.SequenceDiagram.Participant;
+import com.alternatecomputing.jschnizzle.renderer.local.SequenceDiagram.Placement;
+
+/**
+ * Lays out and draws a parsed sequence diagram as SVG. Participants are placed left to right in order of first
+ * appearance, spaced so that message labels and notes fit, and events are drawn top to bottom.
+ */
+public class SequenceDiagramWriter {
+	private static final double MARGIN = 15;
+	private static final double PADDING = 10;
+	private static final double MIN_GAP = 30;
+	private static final double SELF_WIDTH = 30;
+	private static final double ACTIVATION_WIDTH = 10;
+	private static final double HEAD_LENGTH = 10;
+	private static final double HEAD_WIDTH = 5;
+	private static final double CROSS_SIZE = 8;
+	private final SVGBuilder lifelines;
+	private final SVGBuilder background;
+	private final SVGBuilder foreground;
+	private final String boxFill;
+	private final String noteFill;
+	private final String labelFill;
+	private final double radius;
+	private final Map<Participant, LinkedList<Double>> activations = new HashMap<Participant, LinkedList<Double>>();
+	private final Map<Participant, Double> destroyed = new HashMap<Participant, Double>();
+	private final LinkedList<Frame> frames = new LinkedList<Frame>();
+	private double minX;
+	private double maxX;
+
+	/**
+	 * Open alt/opt/loop/par/group block
+	 */
+	private static class Frame {
+		final double top;
+		final String label;
+		final List<Double> elseTops = new ArrayList<Double>();
+		final List<String> elseLabels = new ArrayList<String>();
+		double left = Double.MAX_VALUE;
+		double right = -Double.MAX_VALUE;
+
+		Frame(double top, String label) {
+			this.top = top;
+			this.label = label;
+		}
+	}
+
+	/**
+	 * constructor
+	 *
+	 * @param style websequencediagrams style value; "modern-blue" and "napkin" are drawn in their own style, any other
+	 *        value is drawn in the "default" style
+	 * @param seed seed for the napkin style's hand-drawn wobble
+	 */
+	public SequenceDiagramWriter(String style, long seed) {
+		boolean scruffy = "napkin".equals(style);
+		lifelines = new SVGBuilder(scruffy, seed);
+		background = new SVGBuilder(scruffy, seed + 1);
+		foreground = new SVGBuilder(scruffy, seed + 2);
+		if ("modern-blue".equals(style)) {
+			boxFill = "#a9c7f0";
+			noteFill = "#fffbd1";
+			labelFill = "#dde8f8";
+			radius = 6;
+		} else {
+			boxFill = "white";
+			noteFill = scruffy ? "white" : "#ffffcc";
+			labelFill = "white";
+			radius = 0;
+		}
+	}
+
+	/**
+	 * lay out and draw the given diagram
+	 *
+	 * @param diagram diagram to draw
+	 * @return SVG document
+	 */
+	public String write(SequenceDiagram diagram) {
+		List<Participant> participants = diagram.getParticipants();
+		double boxHeight = 0;
+		for (Participant participant : participants) {
+			participant.width = Math.max(40, blockWidth(participant.label, false) + 2 * PADDING);
+			boxHeight = Math.max(boxHeight, boxHeight(participant));
+		}
+		double width = placeParticipants(participants, diagram.getEvents());
+		double y = MARGIN;
+		if (diagram.title != null) {
+			width = Math.max(width, blockWidth(diagram.title, true) + 2 * MARGIN);
+			y = textBlock(foreground, width / 2, y + SVGBuilder.FONT_SIZE, diagram.title, "middle", true, false) + PADDING;
+		}
+		double headerTop = y;
+		for (Participant participant : participants) {
+			drawParticipant(participant, headerTop, boxHeight);
+		}
+		y += boxHeight + 15;
+		for (Event event : diagram.getEvents()) {
+			y = drawEvent(event, y);
+		}
+		y += PADDING;
+		for (Map.Entry<Participant, LinkedList<Double>> entry : activations.entrySet()) {
+			while (!entry.getValue().isEmpty()) {
+				drawActivation(entry.getKey(), entry.getValue().removeLast().doubleValue(), y);
+			}
+		}
+		for (Participant participant : participants) {
+			Double end = destroyed.get(participant);
+			if (end != null) {
+				// a destroyed participant's lifeline stops at its cross
+				lifelines.line(participant.x, headerTop + boxHeight, participant.x, end.doubleValue(), true);
+				continue;
+			}
+			lifelines.line(participant.x, headerTop + boxHeight, participant.x, y, true);
+			drawParticipant(participant, y, boxHeight);
+		}
+		lifelines.append(background);
+		lifelines.append(foreground);
+		return lifelines.toSVG(width, y + boxHeight + MARGIN);
+	}
+
+	/**
+	 * set each participant's lifeline position so that the labels and notes between participants fit
+	 *
+	 * @return diagram width
+	 */
+	private double placeParticipants(List<Participant> participants, List<Event> events) {
+		int count = participants.size();
+		if (count == 0) {
+			return 2 * MARGIN;
+		}
+		double[] gaps = new double[Math.max(0, count - 1)];
+		for (int i = 0; i < gaps.length; i++) {
+			gaps[i] = (participants.get(i).width + participants.get(i + 1).width) / 2 + MIN_GAP;
+		}
+		double leftExtent = participants.get(0).width / 2;
+		double rightExtent = participants.get(count - 1).width / 2;
+		// widen the gaps for the narrowest spans first, so wide spans only grow if they still don't fit
+		for (int span = 0; span < count; span++) {
+			for (Event event : events) {
+				if (event.from == null || event.to == null) {
+					continue;
+				}
+				int lo = Math.min(event.from.index, event.to.index);
+				int hi = Math.max(event.from.index, event.to.index);
+				double textWidth = blockWidth(event.text, false);
+				if (event.kind == Kind.Message && lo == hi && span == 1) {
+					if (lo < gaps.length) {
+						widen(gaps, lo, lo + 1, textWidth + SELF_WIDTH + PADDING + participants.get(lo + 1).width / 2);
+					} else {
+						rightExtent = Math.max(rightExtent, textWidth + SELF_WIDTH + PADDING);
+					}
+				} else if (event.kind == Kind.Message && hi - lo == span && span > 0) {
+					widen(gaps, lo, hi, textWidth + 2 * PADDING);
+				} else if (event.kind == Kind.Note && span == 1) {
+					double noteWidth = textWidth + 2 * PADDING;
+					if (event.placement == Placement.LeftOf || (event.placement == Placement.Over && lo == hi)) {
+						double needed = event.placement == Placement.Over ? noteWidth / 2 : noteWidth + PADDING;
+						if (lo > 0) {
+							widen(gaps, lo - 1, lo, needed + participants.get(lo - 1).width / 2);
+						} else {
+							leftExtent = Math.max(leftExtent, needed);
+						}
+					}
+					if (event.placement == Placement.RightOf || (event.placement == Placement.Over && lo == hi)) {
+						double needed = event.placement == Placement.Over ? noteWidth / 2 : noteWidth + PADDING;
+						if (hi < gaps.length) {
+							widen(gaps, hi, hi + 1, needed + participants.get(hi + 1).width / 2);
+						} else {
+							rightExtent = Math.max(rightExtent, needed);
+						}
+					}
+				}
+			}
+		}
+		// leave room for nested frames around the outermost participants
+		int depth = 0;
+		int maxDepth = 0;
+		for (Event event : events) {
+			if (event.kind == Kind.GroupStart) {
+				maxDepth = Math.max(maxDepth, ++depth);
+			} else if (event.kind == Kind.GroupEnd) {
+				depth--;
+			}
+		}
+		leftExtent += maxDepth * 2 * PADDING;
+		rightExtent += maxDepth * 2 * PADDING;
+		double x = MARGIN + leftExtent;
+		for (int i = 0; i < count; i++) {
+			participants.get(i).x = x;
+			if (i < gaps.length) {
+				x += gaps[i];
+			}
+		}
+		minX = participants.get(0).x;
+		maxX = participants.get(count - 1).x;
+		return x + rightExtent + MARGIN;
+	}
+
+	private static void widen(double[] gaps, int from, int to, double needed) {
+		double total = 0;
+		for (int i = from; i < to; i++) {
+			total += gaps[i];
+		}
+		if (total < needed) {
+			double extra = (needed - total) / (to - from);
+			for (int i = from; i < to; i++) {
+				gaps[i] += extra;
+			}
+		}
+	}
+
+	private double boxHeight(Participant participant) {
+		double textHeight = lines(participant.label).length * SVGBuilder.LINE_HEIGHT;
+		return participant.actor ? textHeight + 40 : textHeight + PADDING;
+	}
+
+	private void drawParticipant(Participant participant, double top, double height) {
+		if (participant.actor) {
+			double cx = participant.x;
+			foreground.ellipse(cx, top + 6, 6, 6, boxFill);
+			foreground.line(cx, top + 12, cx, top + 26, false);
+			foreground.line(cx - 10, top + 17, cx + 10, top + 17, false);
+			foreground.line(cx, top + 26, cx - 8, top + 37, false);
+			foreground.line(cx, top + 26, cx + 8, top + 37, false);
+			textBlock(foreground, cx, top + 40 + SVGBuilder.FONT_SIZE, participant.label, "middle", false, false);
+			return;
+		}
+		foreground.rect(participant.x - participant.width / 2, top, participant.width, height, radius, boxFill, false);
+		double textHeight = lines(participant.label).length * SVGBuilder.LINE_HEIGHT;
+		double baseline = top + (height - textHeight) / 2 + SVGBuilder.FONT_SIZE;
+		textBlock(foreground, participant.x, baseline, participant.label, "middle", false, false);
+	}
+
+	private double drawEvent(Event event, double y) {
+		switch (event.kind) {
+			case Message:
+				return drawMessage(event, y);
+			case Note:
+				return drawNote(event, y);
+			case GroupStart:
+				frames.addLast(new Frame(y, event.text));
+				return y + SVGBuilder.LINE_HEIGHT + PADDING;
+			case GroupElse:
+				Frame frame = frames.getLast();
+				frame.elseTops.add(Double.valueOf(y));
+				frame.elseLabels.add(event.text);
+				return y + SVGBuilder.LINE_HEIGHT + 6;
+			case GroupEnd:
+				drawFrame(frames.removeLast(), y);
+				return y + 15;
+			case Activate:
+				activationStack(event.from).addLast(Double.valueOf(y));
+				return y;
+			case Destroy:
+				return drawDestroy(event.from, y);
+			default: // Deactivate
+				LinkedList<Double> stack = activationStack(event.from);
+				if (!stack.isEmpty()) {
+					drawActivation(event.from, stack.removeLast().doubleValue(), y);
+				}
+				return y;
+		}
+	}
+
+	private double drawMessage(Event message, double y) {
+		String[] lines = lines(message.text);
+		double labelHeight = message.text.length() == 0 ? 0 : lines.length * SVGBuilder.LINE_HEIGHT;
+		y += labelHeight + 4;
+		double fromX = message.from.x;
+		double toX = message.to.x;
+		if (message.from == message.to) {
+			double x = fromX + activationOffset(message.from, 1);
+			textBlock(foreground, x + PADDING, y - labelHeight - 4 + SVGBuilder.FONT_SIZE, message.text, "start", false, false);
+			foreground.line(x, y, x + SELF_WIDTH, y, message.dashed);
+			foreground.line(x + SELF_WIDTH, y, x + SELF_WIDTH, y + 15, message.dashed);
+			foreground.line(x + SELF_WIDTH, y + 15, x, y + 15, message.dashed);
+			drawArrowHead(x, y + 15, -1, message.open);
+			include(x, x + Math.max(SELF_WIDTH, blockWidth(message.text, false) + PADDING));
+			y += 15;
+		} else {
+			double direction = toX > fromX ? 1 : -1;
+			double startX = fromX + activationOffset(message.from, direction);
+			double endX = toX + activationOffset(message.to, -direction);
+			textBlock(foreground, (startX + endX) / 2, y - labelHeight - 4 + SVGBuilder.FONT_SIZE, message.text, "middle", false, false);
+			foreground.line(startX, y, endX, y, message.dashed);
+			drawArrowHead(endX, y, direction, message.open);
+			include(Math.min(startX, endX), Math.max(startX, endX));
+		}
+		if (message.deactivateSource) {
+			LinkedList<Double> stack = activationStack(message.from);
+			if (!stack.isEmpty()) {
+				drawActivation(message.from, stack.removeLast().doubleValue(), y);
+			}
+		}
+		if (message.activateTarget) {
+			activationStack(message.to).addLast(Double.valueOf(y));
+		}
+		return y + 12;
+	}
+
+	private double drawDestroy(Participant participant, double y) {
+		if (destroyed.containsKey(participant)) {
+			return y;
+		}
+		y += CROSS_SIZE;
+		LinkedList<Double> stack = activationStack(participant);
+		while (!stack.isEmpty()) {
+			drawActivation(participant, stack.removeLast().doubleValue(), y);
+		}
+		double x = participant.x;
+		foreground.line(x - CROSS_SIZE, y - CROSS_SIZE, x + CROSS_SIZE, y + CROSS_SIZE, false);
+		foreground.line(x - CROSS_SIZE, y + CROSS_SIZE, x + CROSS_SIZE, y - CROSS_SIZE, false);
+		include(x - CROSS_SIZE, x + CROSS_SIZE);
+		destroyed.put(participant, Double.valueOf(y));
+		return y + CROSS_SIZE + 4;
+	}
+
+	private double drawNote(Event note, double y) {
+		double width = blockWidth(note.text, false) + 2 * PADDING;
+		double height = lines(note.text).length * SVGBuilder.LINE_HEIGHT + PADDING;
+		double left;
+		switch (note.placement) {
+			case LeftOf:
+				left = note.from.x - PADDING - width;
+				break;
+			case RightOf:
+				left = note.to.x + PADDING;
+				break;
+			default:
+				double from = Math.min(note.from.x, note.to.x);
+				double to = Math.max(note.from.x, note.to.x);
+				if (from == to) {
+					left = from - width / 2;
+				} else {
+					width = Math.max(width, to - from + 2 * PADDING);
+					left = (from + to - width) / 2;
+				}
+				break;
+		}
+		double right = left + width;
+		double bottom = y + height;
+		double fold = PADDING;
+		foreground.polygon(new double[] { left, y, right - fold, y, right, y + fold, right, bottom, left, bottom }, noteFill);
+		foreground.line(right - fold, y, right - fold, y + fold, false);
+		foreground.line(right - fold, y + fold, right, y + fold, false);
+		textBlock(foreground, left + PADDING, y + PADDING / 2 + SVGBuilder.FONT_SIZE, note.text, "start", false, false);
+		include(left, right);
+		return bottom + PADDING;
+	}
+
+	private void drawFrame(Frame frame, double bottom) {
+		double left = (frame.left == Double.MAX_VALUE ? minX : frame.left) - 2 * PADDING;
+		double right = (frame.right == -Double.MAX_VALUE ? maxX : frame.right) + 2 * PADDING;
+		foreground.rect(left, frame.top, right - left, bottom - frame.top + 5, 0, "none", false);
+		double tabWidth = SVGBuilder.textWidth(frame.label, true) + PADDING;
+		double tabHeight = SVGBuilder.LINE_HEIGHT + 2;
+		foreground.polygon(new double[] { left, frame.top, left + tabWidth + 6, frame.top, left + tabWidth + 6, frame.top + tabHeight - 6, left + tabWidth, frame.top + tabHeight, left,
+				frame.top + tabHeight }, labelFill);
+		foreground.text(left + PADDING / 2, frame.top + SVGBuilder.FONT_SIZE + 1, frame.label, "start", true, false);
+		for (int i = 0; i < frame.elseTops.size(); i++) {
+			double top = frame.elseTops.get(i).doubleValue();
+			foreground.line(left, top, right, top, true);
+			String label = frame.elseLabels.get(i);
+			if (label.length() > 0) {
+				foreground.text(left + PADDING / 2, top + SVGBuilder.FONT_SIZE + 1, "[" + label + "]", "start", false, true);
+			}
+		}
+		// the enclosing frame must surround this one
+		include(left, right);
+	}
+
+	private void drawActivation(Participant participant, double top, double bottom) {
+		int depth = activationStack(participant).size();
+		double x = participant.x - ACTIVATION_WIDTH / 2 + depth * ACTIVATION_WIDTH / 2;
+		background.rect(x, top, ACTIVATION_WIDTH, Math.max(bottom - top, 5), 0, boxFill, false);
+	}
+
+	private LinkedList<Double> activationStack(Participant participant) {
+		LinkedList<Double> stack = activations.get(participant);
+		if (stack == null) {
+			stack = new LinkedList<Double>();
+			activations.put(participant, stack);
+		}
+		return stack;
+	}
+
+	/**
+	 * return how far a message should start or end from the lifeline, given the participant's active activations
+	 */
+	private double activationOffset(Participant participant, double direction) {
+		int depth = activationStack(participant).size();
+		if (depth == 0) {
+			return 0;
+		}
+		return direction * ACTIVATION_WIDTH / 2 + (depth - 1) * ACTIVATION_WIDTH / 2;
+	}
+
+	private void drawArrowHead(double x, double y, double direction, boolean open) {
+		double baseX = x - direction * HEAD_LENGTH;
+		if (open) {
+			foreground.line(x, y, baseX, y - HEAD_WIDTH, false);
+			foreground.line(x, y, baseX, y + HEAD_WIDTH, false);
+		} else {
+			foreground.polygon(new double[] { x, y, baseX, y - HEAD_WIDTH, baseX, y + HEAD_WIDTH }, "black");
+		}
+	}
+
+	/**
+	 * grow every open frame to include the given horizontal range
+	 */
+	private void include(double left, double right) {
+		for (Frame frame : frames) {
+			frame.left = Math.min(frame.left, left);
+			frame.right = Math.max(frame.right, right);
+		}
+	}
+
+	/**
+	 * draw possibly multi-line text
+	 *
+	 * @return baseline following the last line
+	 */
+	private static double textBlock(SVGBuilder svg, double x, double baseline, String text, String anchor, boolean bold, boolean italic) {
+		for (String line : lines(text)) {
+			svg.text(x, baseline, line, anchor, bold, italic);
+			baseline += SVGBuilder.LINE_HEIGHT;
+		}
+		return baseline;
+	}
+
+	private static double blockWidth(String text, boolean bold) {
+		double width = 0;
+		for (String line : lines(text)) {
+			width = Math.max(width, SVGBuilder.textWidth(line, bold));
+		}
+		return width;
+	}
+
+	private static String[] lines(String text) {
+		return text.split("\n");
+	}
+
+}
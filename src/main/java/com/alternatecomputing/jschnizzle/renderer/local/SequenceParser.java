@@ -0,0 +1,134 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer.local;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.alternatecomputing.jschnizzle.renderer.RendererException;
+import com.alternatecomputing.jschnizzle.renderer.local.SequenceDiagram.Event;
+import com.alternatecomputing.jschnizzle.renderer.local.SequenceDiagram.Kind;
+import com.alternatecomputing.jschnizzle.renderer.local.SequenceDiagram.Participant;
+import com.alternatecomputing.jschnizzle.renderer.local.SequenceDiagram.Placement;
+
+/**
+ * Parser for the websequencediagrams text syntax. Supported statements are <code>title</code>,
+ * <code>participant</code>, <code>actor</code>, messages (<code>-&gt;</code>, <code>--&gt;</code>,
+ * <code>-&gt;&gt;</code>, <code>--&gt;&gt;</code>, with optional <code>+</code>/<code>-</code> activation markers),
+ * single and multi-line notes, <code>alt</code>/<code>else</code>, <code>opt</code>, <code>loop</code>,
+ * <code>par</code> and <code>group</code> blocks, and <code>activate</code>/<code>deactivate</code>/<code>destroy</code>.
+ */
+public class SequenceParser {
+	private static final Pattern TITLE = Pattern.compile("title\\s+(.*)");
+	private static final Pattern PARTICIPANT = Pattern.compile("(participant|actor)\\s+(?:\"([^\"]*)\"|(.+?))(?:\\s+as\\s+(\\S+))?");
+	private static final Pattern NOTE = Pattern.compile("note\\s+(left of|right of|over)\\s+([^:]+?)\\s*(?::\\s*(.*))?");
+	private static final Pattern GROUP = Pattern.compile("(alt|opt|loop|par|group)\\b\\s*(.*)");
+	private static final Pattern ELSE = Pattern.compile("else\\b\\s*(.*)");
+	private static final Pattern ACTIVATION = Pattern.compile("(activate|deactivate|destroy)\\s+(.+)");
+	private static final Pattern MESSAGE = Pattern.compile("(.+?)\\s*(-->>|->>|-->|->)\\s*([+-]?)\\s*([^:]+?)\\s*(?::\\s*(.*))?");
+
+	/**
+	 * parse the given script
+	 *
+	 * @param script websequencediagrams script
+	 * @return parsed diagram
+	 * @throws RendererException if the script contains a statement that cannot be parsed
+	 */
+	public static SequenceDiagram parse(String script) {
+		SequenceDiagram diagram = new SequenceDiagram();
+		String[] lines = script.split("\r?\n");
+		int depth = 0;
+		for (int i = 0; i < lines.length; i++) {
+			String line = lines[i].trim();
+			if (line.length() == 0 || line.startsWith("#")) {
+				continue;
+			}
+			Matcher matcher;
+			if ((matcher = TITLE.matcher(line)).matches()) {
+				diagram.title = text(matcher.group(1));
+			} else if ((matcher = PARTICIPANT.matcher(line)).matches()) {
+				String label = matcher.group(2) != null ? matcher.group(2) : matcher.group(3);
+				String name = matcher.group(4) != null ? matcher.group(4) : label;
+				Participant participant = diagram.getParticipant(name);
+				participant.label = text(label);
+				participant.actor = "actor".equals(matcher.group(1));
+			} else if ((matcher = NOTE.matcher(line)).matches()) {
+				Event note = diagram.addEvent(Kind.Note);
+				String position = matcher.group(1);
+				note.placement = position.startsWith("left") ? Placement.LeftOf : position.startsWith("right") ? Placement.RightOf : Placement.Over;
+				String[] names = matcher.group(2).split(",");
+				note.from = diagram.getParticipant(names[0].trim());
+				note.to = diagram.getParticipant(names[names.length - 1].trim());
+				if (matcher.group(3) != null) {
+					note.text = text(matcher.group(3));
+				} else {
+					// multi-line note, terminated by "end note"
+					StringBuilder text = new StringBuilder();
+					while (++i < lines.length && !lines[i].trim().equals("end note")) {
+						if (text.length() > 0) {
+							text.append('\n');
+						}
+						text.append(lines[i].trim());
+					}
+					if (i == lines.length) {
+						throw new RendererException("line " + (i + 1) + ": note is missing 'end note'");
+					}
+					note.text = text.toString();
+				}
+			} else if (line.equals("end")) {
+				if (depth == 0) {
+					throw new RendererException("line " + (i + 1) + ": 'end' without a matching group");
+				}
+				depth--;
+				diagram.addEvent(Kind.GroupEnd);
+			} else if ((matcher = ELSE.matcher(line)).matches()) {
+				if (depth == 0) {
+					throw new RendererException("line " + (i + 1) + ": 'else' outside of a group");
+				}
+				diagram.addEvent(Kind.GroupElse).text = text(matcher.group(1));
+			} else if ((matcher = GROUP.matcher(line)).matches()) {
+				depth++;
+				Event group = diagram.addEvent(Kind.GroupStart);
+				group.text = matcher.group(1) + (matcher.group(2).length() > 0 ? " [" + text(matcher.group(2)) + "]" : "");
+			} else if ((matcher = ACTIVATION.matcher(line)).matches()) {
+				String keyword = matcher.group(1);
+				Kind kind = "activate".equals(keyword) ? Kind.Activate : "destroy".equals(keyword) ? Kind.Destroy : Kind.Deactivate;
+				diagram.addEvent(kind).from = diagram.getParticipant(matcher.group(2).trim());
+			} else if ((matcher = MESSAGE.matcher(line)).matches()) {
+				Event message = diagram.addEvent(Kind.Message);
+				String arrow = matcher.group(2);
+				message.from = diagram.getParticipant(matcher.group(1).trim());
+				message.to = diagram.getParticipant(matcher.group(4).trim());
+				message.dashed = arrow.startsWith("--");
+				message.open = arrow.endsWith(">>");
+				message.activateTarget = "+".equals(matcher.group(3));
+				message.deactivateSource = "-".equals(matcher.group(3));
+				message.text = matcher.group(5) == null ? "" : text(matcher.group(5));
+			} else {
+				throw new RendererException("line " + (i + 1) + ": cannot parse '" + line + "'");
+			}
+		}
+		for (; depth > 0; depth--) {
+			diagram.addEvent(Kind.GroupEnd); // close unterminated groups, as websequencediagrams does
+		}
+		return diagram;
+	}
+
+	private static String text(String text) {
+		return text.trim().replace("\\n", "\n");
+	}
+
+}
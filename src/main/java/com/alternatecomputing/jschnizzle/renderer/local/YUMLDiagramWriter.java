@@ -0,0 +1,311 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer.local;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import com.alternatecomputing.jschnizzle.model.DiagramType;
+import com.alternatecomputing.jschnizzle.renderer.local.Graph.Edge;
+import com.alternatecomputing.jschnizzle.renderer.local.Graph.Head;
+import com.alternatecomputing.jschnizzle.renderer.local.Graph.Node;
+import com.alternatecomputing.jschnizzle.renderer.local.Graph.Shape;
+
+/**
+ * Sizes, lays out and draws a parsed yUML graph as SVG
+ */
+public class YUMLDiagramWriter {
+	private static final double PADDING = 8;
+	private static final double HEAD_LENGTH = 12;
+	private static final double HEAD_WIDTH = 6;
+	// {bg:...} values that are used as a fill: colour names and hex colours
+	private static final Pattern COLOUR = Pattern.compile("[a-zA-Z]+|#[0-9a-fA-F]{3}|#[0-9a-fA-F]{6}");
+	private final boolean plain;
+	private final SVGBuilder svg;
+	private final String defaultFill;
+
+	/**
+	 * constructor
+	 *
+	 * @param style yUML style value, i.e. "nofunky;", "plain;" or "scruffy;"
+	 * @param seed seed for the scruffy style's hand-drawn wobble
+	 */
+	public YUMLDiagramWriter(String style, long seed) {
+		boolean scruffy = style != null && style.startsWith("scruffy");
+		this.plain = style != null && style.startsWith("plain");
+		this.svg = new SVGBuilder(scruffy, seed);
+		this.defaultFill = scruffy ? "#fffde7" : "white";
+	}
+
+	/**
+	 * lay out and draw the given graph
+	 *
+	 * @param graph graph to draw
+	 * @param type diagram type, which determines the layout direction
+	 * @return SVG document
+	 */
+	public String write(Graph graph, DiagramType type) {
+		boolean leftToRight = type != DiagramType.Class;
+		for (Node node : graph.getNodes()) {
+			size(node, leftToRight);
+		}
+		LayeredLayout layout = new LayeredLayout(leftToRight);
+		layout.layout(graph);
+		for (Edge edge : graph.getEdges()) {
+			drawEdge(edge);
+		}
+		for (Node node : graph.getNodes()) {
+			drawNode(node);
+		}
+		return svg.toSVG(layout.getWidth(), layout.getHeight());
+	}
+
+	private void size(Node node, boolean leftToRight) {
+		String text = firstLine(node);
+		switch (node.shape) {
+			case Class:
+			case Note:
+				double width = 0;
+				double height = 0;
+				for (int i = 0; i < node.compartments.size(); i++) {
+					List<String> lines = node.compartments.get(i);
+					for (String line : lines) {
+						width = Math.max(width, SVGBuilder.textWidth(line, i == 0));
+					}
+					height += Math.max(1, lines.size()) * SVGBuilder.LINE_HEIGHT + PADDING;
+				}
+				node.width = width + 2 * PADDING + (node.shape == Shape.Note ? PADDING : 0);
+				node.height = height;
+				break;
+			case Actor:
+				node.width = Math.max(30, SVGBuilder.textWidth(text, false));
+				node.height = 50 + SVGBuilder.LINE_HEIGHT;
+				break;
+			case UseCase:
+				node.width = SVGBuilder.textWidth(text, false) + 40;
+				node.height = 40;
+				break;
+			case Activity:
+				node.width = SVGBuilder.textWidth(text, false) + 30;
+				node.height = 30;
+				break;
+			case Decision:
+				node.width = 30;
+				node.height = 30;
+				break;
+			case Bar:
+				node.width = leftToRight ? 6 : 60;
+				node.height = leftToRight ? 60 : 6;
+				break;
+			default: // Start, End
+				node.width = 20;
+				node.height = 20;
+				break;
+		}
+	}
+
+	private void drawNode(Node node) {
+		String fill = fill(node);
+		double cx = node.centerX();
+		double cy = node.centerY();
+		switch (node.shape) {
+			case Class:
+				svg.rect(node.x, node.y, node.width, node.height, 0, fill, false);
+				double y = node.y;
+				for (int i = 0; i < node.compartments.size(); i++) {
+					List<String> lines = node.compartments.get(i);
+					if (i > 0) {
+						svg.line(node.x, y, node.x + node.width, y, false);
+					}
+					double baseline = y + PADDING / 2 + SVGBuilder.FONT_SIZE;
+					for (String line : lines) {
+						if (i == 0) {
+							svg.text(cx, baseline, line, "middle", true, false);
+						} else {
+							svg.text(node.x + PADDING, baseline, line, "start", false, false);
+						}
+						baseline += SVGBuilder.LINE_HEIGHT;
+					}
+					y += Math.max(1, lines.size()) * SVGBuilder.LINE_HEIGHT + PADDING;
+				}
+				break;
+			case Note:
+				double fold = PADDING;
+				double right = node.x + node.width;
+				double bottom = node.y + node.height;
+				svg.polygon(new double[] { node.x, node.y, right - fold, node.y, right, node.y + fold, right, bottom, node.x, bottom }, fill);
+				svg.line(right - fold, node.y, right - fold, node.y + fold, false);
+				svg.line(right - fold, node.y + fold, right, node.y + fold, false);
+				double noteBaseline = node.y + PADDING / 2 + SVGBuilder.FONT_SIZE;
+				for (String line : node.compartments.get(0)) {
+					svg.text(node.x + PADDING, noteBaseline, line, "start", false, false);
+					noteBaseline += SVGBuilder.LINE_HEIGHT;
+				}
+				break;
+			case Actor:
+				double headY = node.y + 6;
+				svg.ellipse(cx, headY, 6, 6, fill);
+				svg.line(cx, headY + 6, cx, node.y + 32, false);
+				svg.line(cx - 12, node.y + 18, cx + 12, node.y + 18, false);
+				svg.line(cx, node.y + 32, cx - 10, node.y + 46, false);
+				svg.line(cx, node.y + 32, cx + 10, node.y + 46, false);
+				svg.text(cx, node.y + node.height - 2, firstLine(node), "middle", false, false);
+				break;
+			case UseCase:
+				svg.ellipse(cx, cy, node.width / 2, node.height / 2, fill);
+				svg.text(cx, cy + SVGBuilder.FONT_SIZE / 3, firstLine(node), "middle", false, false);
+				break;
+			case Activity:
+				svg.rect(node.x, node.y, node.width, node.height, 10, fill, false);
+				svg.text(cx, cy + SVGBuilder.FONT_SIZE / 3, firstLine(node), "middle", false, false);
+				break;
+			case Decision:
+				svg.polygon(new double[] { cx, node.y, node.x + node.width, cy, cx, node.y + node.height, node.x, cy }, fill);
+				break;
+			case Bar:
+				svg.rect(node.x, node.y, node.width, node.height, 0, "black", false);
+				break;
+			case Start:
+				svg.ellipse(cx, cy, node.width / 2, node.height / 2, "black");
+				break;
+			case End:
+				svg.ellipse(cx, cy, node.width / 2, node.height / 2, "white");
+				svg.ellipse(cx, cy, node.width / 2 - 4, node.height / 2 - 4, "black");
+				break;
+		}
+	}
+
+	private void drawEdge(Edge edge) {
+		if (edge.from == edge.to) {
+			drawLoop(edge);
+			return;
+		}
+		double[] start = clip(edge.from, edge.to.centerX(), edge.to.centerY());
+		double[] end = clip(edge.to, edge.from.centerX(), edge.from.centerY());
+		double dx = end[0] - start[0];
+		double dy = end[1] - start[1];
+		double length = Math.sqrt(dx * dx + dy * dy);
+		if (length < 1) {
+			return; // overlapping nodes
+		}
+		double ux = dx / length;
+		double uy = dy / length;
+		svg.line(start[0], start[1], end[0], end[1], edge.dashed);
+		drawHead(edge.fromHead, start[0], start[1], ux, uy);
+		drawHead(edge.toHead, end[0], end[1], -ux, -uy);
+		drawEndLabel(edge.fromLabel, start[0], start[1], ux, uy);
+		drawEndLabel(edge.toLabel, end[0], end[1], -ux, -uy);
+		if (edge.label.length() > 0) {
+			// beside a mostly vertical edge, above a mostly horizontal one
+			boolean vertical = Math.abs(uy) > Math.abs(ux);
+			double lx = (start[0] + end[0]) / 2 + (vertical ? 6 : 0);
+			double ly = (start[1] + end[1]) / 2 + (vertical ? SVGBuilder.FONT_SIZE / 3 : -6);
+			svg.text(lx, ly, edge.label, vertical ? "start" : "middle", false, true);
+		}
+	}
+
+	private void drawLoop(Edge edge) {
+		Node node = edge.from;
+		double right = node.x + node.width;
+		double top = node.y + node.height / 4;
+		double bottom = node.y + node.height * 3 / 4;
+		svg.line(right, top, right + 20, top, edge.dashed);
+		svg.line(right + 20, top, right + 20, bottom, edge.dashed);
+		svg.line(right + 20, bottom, right, bottom, edge.dashed);
+		drawHead(edge.toHead, right, bottom, 1, 0);
+	}
+
+	/**
+	 * find where the line from the node's center towards the given point leaves the node's outline
+	 */
+	private static double[] clip(Node node, double tx, double ty) {
+		double cx = node.centerX();
+		double cy = node.centerY();
+		double dx = tx - cx;
+		double dy = ty - cy;
+		double hw = node.width / 2;
+		double hh = node.height / 2;
+		if (dx == 0 && dy == 0) {
+			return new double[] { cx, cy };
+		}
+		double scale;
+		switch (node.shape) {
+			case UseCase:
+			case Start:
+			case End:
+				scale = 1 / Math.sqrt((dx * dx) / (hw * hw) + (dy * dy) / (hh * hh));
+				break;
+			case Decision:
+				scale = 1 / (Math.abs(dx) / hw + Math.abs(dy) / hh);
+				break;
+			default:
+				scale = Math.min(dx == 0 ? Double.MAX_VALUE : hw / Math.abs(dx), dy == 0 ? Double.MAX_VALUE : hh / Math.abs(dy));
+				break;
+		}
+		return new double[] { cx + dx * scale, cy + dy * scale };
+	}
+
+	/**
+	 * draw an edge decoration at the given point, with (ux, uy) pointing from the node along the edge
+	 */
+	private void drawHead(Head head, double x, double y, double ux, double uy) {
+		double px = -uy;
+		double py = ux;
+		switch (head) {
+			case Arrow:
+				svg.line(x, y, x + ux * HEAD_LENGTH + px * HEAD_WIDTH, y + uy * HEAD_LENGTH + py * HEAD_WIDTH, false);
+				svg.line(x, y, x + ux * HEAD_LENGTH - px * HEAD_WIDTH, y + uy * HEAD_LENGTH - py * HEAD_WIDTH, false);
+				break;
+			case Triangle:
+				svg.polygon(new double[] { x, y, x + ux * HEAD_LENGTH + px * HEAD_WIDTH, y + uy * HEAD_LENGTH + py * HEAD_WIDTH,
+						x + ux * HEAD_LENGTH - px * HEAD_WIDTH, y + uy * HEAD_LENGTH - py * HEAD_WIDTH }, "white");
+				break;
+			case OpenDiamond:
+			case FilledDiamond:
+				double half = HEAD_LENGTH * 0.75;
+				svg.polygon(new double[] { x, y, x + ux * half + px * HEAD_WIDTH, y + uy * half + py * HEAD_WIDTH, x + ux * HEAD_LENGTH * 1.5,
+						y + uy * HEAD_LENGTH * 1.5, x + ux * half - px * HEAD_WIDTH, y + uy * half - py * HEAD_WIDTH }, head == Head.FilledDiamond ? "black" : "white");
+				break;
+			default:
+				break;
+		}
+	}
+
+	private void drawEndLabel(String label, double x, double y, double ux, double uy) {
+		if (label.length() == 0) {
+			return;
+		}
+		boolean vertical = Math.abs(uy) > Math.abs(ux);
+		double lx = x + ux * (HEAD_LENGTH * 1.5 + 4) + (vertical ? HEAD_WIDTH + 2 : 0);
+		double ly = y + uy * (HEAD_LENGTH * 1.5 + 4) + (vertical ? SVGBuilder.FONT_SIZE / 3 : -HEAD_WIDTH - 2);
+		svg.text(lx, ly, label, vertical ? "start" : "middle", false, false);
+	}
+
+	private String fill(Node node) {
+		if (plain || node.fill == null || !COLOUR.matcher(node.fill).matches()) {
+			return defaultFill;
+		}
+		return node.fill;
+	}
+
+	private static String firstLine(Node node) {
+		if (node.compartments.isEmpty() || node.compartments.get(0).isEmpty()) {
+			return "";
+		}
+		return node.compartments.get(0).get(0);
+	}
+
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer.local;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.alternatecomputing.jschnizzle.model.DiagramType;
+import com.alternatecomputing.jschnizzle.renderer.RendererException;
+import com.alternatecomputing.jschnizzle.renderer.local.Graph.Head;
+import com.alternatecomputing.jschnizzle.renderer.local.Graph.Node;
+import com.alternatecomputing.jschnizzle.renderer.local.Graph.Shape;
+
+/**
+ * Parser for the yUML class, activity and use case diagram DSL
+ */
+public class YUMLParser {
+	private static final Pattern BACKGROUND = Pattern.compile("\\{bg:([^}]*)\\}");
+	private static final Pattern CONDITION = Pattern.compile("\\[([^\\]]*)\\]");
+
+	/**
+	 * convert a diagram script to the single-line yUML DSL: comment lines are dropped and the remaining lines are
+	 * joined with commas
+	 *
+	 * @param script diagram script
+	 * @return yUML DSL
+	 */
+	public static String preprocess(String script) {
+		StringTokenizer st = new StringTokenizer(script.trim(), "\n");
+		StringBuilder buffer = new StringBuilder();
+		while (st.hasMoreTokens()) {
+			String token = st.nextToken();
+			if (token.startsWith("#")) {
+				continue; // skip over comments
+			}
+			buffer.append(token.trim());
+			if (st.hasMoreTokens()) {
+				buffer.append(", ");
+			}
+		}
+		return buffer.toString();
+	}
+
+	/**
+	 * parse the given yUML DSL into a graph
+	 *
+	 * @param dsl yUML DSL, as produced by {@link #preprocess(String)}
+	 * @param type diagram type, which determines how brackets and edges are interpreted
+	 * @return graph
+	 */
+	public static Graph parse(String dsl, DiagramType type) {
+		Graph graph = new Graph();
+		for (String statement : splitStatements(dsl)) {
+			parseStatement(graph, statement, type);
+		}
+		return graph;
+	}
+
+	private static List<String> splitStatements(String dsl) {
+		List<String> statements = new ArrayList<String>();
+		int depth = 0;
+		int start = 0;
+		for (int i = 0; i < dsl.length(); i++) {
+			char c = dsl.charAt(i);
+			if (c == '[' || c == '(' || c == '{') {
+				depth++;
+			} else if (c == ']' || c == ')' || c == '}') {
+				depth = Math.max(0, depth - 1);
+			} else if (c == ',' && depth == 0) {
+				statements.add(dsl.substring(start, i).trim());
+				start = i + 1;
+			}
+		}
+		statements.add(dsl.substring(start).trim());
+		return statements;
+	}
+
+	private static void parseStatement(Graph graph, String statement, DiagramType type) {
+		Node previous = null;
+		StringBuilder edgeText = new StringBuilder();
+		int i = 0;
+		while (i < statement.length()) {
+			char c = statement.charAt(i);
+			int end = -1;
+			Node node = null;
+			if (c == '[' && type != DiagramType.Activity) {
+				end = findClose(statement, i, '[', ']');
+				String content = statement.substring(i + 1, end);
+				node = type == DiagramType.UseCase ? addUseCaseBox(graph, content) : addClassBox(graph, content);
+			} else if (c == '(' && type != DiagramType.Class) {
+				end = findClose(statement, i, '(', ')');
+				String content = statement.substring(i + 1, end);
+				node = type == DiagramType.UseCase ? addSimple(graph, Shape.UseCase, content) : addActivity(graph, content);
+			} else if (c == '[' && type == DiagramType.Activity) {
+				// a condition on the edge; its text may contain anything, including '<'
+				int close = statement.indexOf(']', i);
+				close = close < 0 ? statement.length() : close + 1;
+				edgeText.append(statement, i, close);
+				i = close;
+				continue;
+			} else if (c == '<' && type == DiagramType.Activity) {
+				end = statement.indexOf('>', i);
+				node = addSimple(graph, Shape.Decision, statement.substring(i + 1, end < 0 ? statement.length() : end));
+			} else if (c == '|' && type == DiagramType.Activity) {
+				end = statement.indexOf('|', i + 1);
+				node = addSimple(graph, Shape.Bar, statement.substring(i + 1, end < 0 ? statement.length() : end));
+			}
+			if (node == null) {
+				edgeText.append(c);
+				i++;
+				continue;
+			}
+			if (previous != null) {
+				addEdge(graph, previous, node, edgeText.toString().trim(), type);
+			}
+			previous = node;
+			edgeText.setLength(0);
+			i = end < 0 ? statement.length() : end + 1;
+		}
+	}
+
+	private static int findClose(String s, int start, char open, char close) {
+		int depth = 0;
+		for (int i = start; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == open) {
+				depth++;
+			} else if (c == close && --depth == 0) {
+				return i;
+			}
+		}
+		throw new RendererException("unbalanced '" + open + "' in '" + s + "'");
+	}
+
+	private static Node addClassBox(Graph graph, String content) {
+		String fill = extractFill(content);
+		content = BACKGROUND.matcher(content).replaceAll("").trim();
+		if (content.startsWith("note:")) {
+			return addNote(graph, content, fill);
+		}
+		List<List<String>> compartments = new ArrayList<List<String>>();
+		for (String compartment : content.split("\\|", -1)) {
+			List<String> lines = new ArrayList<String>();
+			for (String line : compartment.split(";")) {
+				if (line.trim().length() > 0) {
+					lines.add(line.trim());
+				}
+			}
+			compartments.add(lines);
+		}
+		String id = compartments.get(0).isEmpty() ? "" : compartments.get(0).get(0);
+		return graph.addNode(Shape.Class, id, compartments, fill);
+	}
+
+	private static Node addUseCaseBox(Graph graph, String content) {
+		String fill = extractFill(content);
+		content = BACKGROUND.matcher(content).replaceAll("").trim();
+		if (content.startsWith("note:")) {
+			return addNote(graph, content, fill);
+		}
+		return graph.addNode(Shape.Actor, content, singleLine(content), fill);
+	}
+
+	private static Node addNote(Graph graph, String content, String fill) {
+		String text = content.substring("note:".length()).trim();
+		return graph.addNode(Shape.Note, text, singleLine(text), fill);
+	}
+
+	private static Node addActivity(Graph graph, String content) {
+		String fill = extractFill(content);
+		content = BACKGROUND.matcher(content).replaceAll("").trim();
+		if ("start".equalsIgnoreCase(content)) {
+			return graph.addNode(Shape.Start, content, singleLine(""), fill);
+		} else if ("end".equalsIgnoreCase(content)) {
+			return graph.addNode(Shape.End, content, singleLine(""), fill);
+		} else if (content.startsWith("note:")) {
+			return addNote(graph, content, fill);
+		}
+		return graph.addNode(Shape.Activity, content, singleLine(content), fill);
+	}
+
+	private static Node addSimple(Graph graph, Shape shape, String content) {
+		String fill = extractFill(content);
+		content = BACKGROUND.matcher(content).replaceAll("").trim();
+		return graph.addNode(shape, content, singleLine(shape == Shape.UseCase ? content : ""), fill);
+	}
+
+	private static String extractFill(String content) {
+		Matcher matcher = BACKGROUND.matcher(content);
+		return matcher.find() ? matcher.group(1).trim() : null;
+	}
+
+	private static List<List<String>> singleLine(String text) {
+		List<String> lines = new ArrayList<String>();
+		lines.add(text);
+		List<List<String>> compartments = new ArrayList<List<String>>();
+		compartments.add(lines);
+		return compartments;
+	}
+
+	private static void addEdge(Graph graph, Node from, Node to, String text, DiagramType type) {
+		Graph.Edge edge = graph.addEdge(from, to);
+		if (from.shape == Shape.Note || to.shape == Shape.Note) {
+			edge.dashed = true;
+			return;
+		}
+		switch (type) {
+			case Activity:
+				Matcher matcher = CONDITION.matcher(text);
+				if (matcher.find()) {
+					edge.label = matcher.group(1).trim();
+					text = matcher.replaceAll("").trim();
+				}
+				if (text.endsWith(">")) {
+					edge.toHead = Head.Arrow;
+					text = text.substring(0, text.length() - 1);
+				}
+				// the dashes either side of a condition, as in (a)-[cond]->(b)
+				text = text.replaceAll("^-+|-+$", "");
+				if (text.trim().length() > 0) {
+					edge.label = edge.label.length() == 0 ? text.trim() : edge.label + " " + text.trim();
+				}
+				break;
+			case UseCase:
+				if (text.equals("<")) {
+					edge.fromHead = Head.Arrow;
+					edge.dashed = true;
+					edge.label = "\u00abextend\u00bb";
+				} else if (text.equals(">")) {
+					edge.toHead = Head.Arrow;
+					edge.dashed = true;
+					edge.label = "\u00abinclude\u00bb";
+				} else {
+					parseClassEdge(edge, text);
+				}
+				break;
+			default:
+				parseClassEdge(edge, text);
+				break;
+		}
+	}
+
+	private static void parseClassEdge(Graph.Edge edge, String text) {
+		String t = text;
+		if (t.startsWith("<>")) {
+			edge.fromHead = Head.OpenDiamond;
+			t = t.substring(2);
+		} else if (t.startsWith("++")) {
+			edge.fromHead = Head.FilledDiamond;
+			t = t.substring(2);
+		} else if (t.startsWith("+")) {
+			edge.fromHead = Head.OpenDiamond;
+			t = t.substring(1);
+		} else if (t.startsWith("^")) {
+			edge.fromHead = Head.Triangle;
+			t = t.substring(1);
+		} else if (t.startsWith("<")) {
+			edge.fromHead = Head.Arrow;
+			t = t.substring(1);
+		}
+		if (t.endsWith("<>")) {
+			edge.toHead = Head.OpenDiamond;
+			t = t.substring(0, t.length() - 2);
+		} else if (t.endsWith("++")) {
+			edge.toHead = Head.FilledDiamond;
+			t = t.substring(0, t.length() - 2);
+		} else if (t.endsWith("+")) {
+			edge.toHead = Head.OpenDiamond;
+			t = t.substring(0, t.length() - 1);
+		} else if (t.endsWith("^")) {
+			edge.toHead = Head.Triangle;
+			t = t.substring(0, t.length() - 1);
+		} else if (t.endsWith(">")) {
+			edge.toHead = Head.Arrow;
+			t = t.substring(0, t.length() - 1);
+		}
+		int split = t.indexOf("-.-");
+		int length = 3;
+		if (split >= 0) {
+			edge.dashed = true;
+		} else {
+			split = t.indexOf('-');
+			length = 1;
+		}
+		if (split >= 0) {
+			edge.fromLabel = t.substring(0, split).trim();
+			edge.toLabel = t.substring(split + length).trim();
+		}
+	}
+
+}
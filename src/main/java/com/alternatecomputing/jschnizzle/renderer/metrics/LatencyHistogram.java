@@ -0,0 +1,108 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer.metrics;
+
+/**
+ * Histogram of latencies in fixed, roughly logarithmic buckets from one millisecond to one minute. Percentiles are
+ * reported as the upper bound of the bucket they fall in, which is precise enough to tell a 100ms render from a 2s
+ * one at a constant memory cost.
+ */
+public class LatencyHistogram {
+	private static final long[] BOUNDS = { 1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000 };
+	private final long[] counts = new long[BOUNDS.length + 1];
+	private long count;
+	private long totalMillis;
+	private long maxMillis;
+
+	/**
+	 * record one latency
+	 *
+	 * @param millis latency in milliseconds
+	 */
+	public synchronized void record(long millis) {
+		int bucket = 0;
+		while (bucket < BOUNDS.length && millis > BOUNDS[bucket]) {
+			bucket++;
+		}
+		counts[bucket]++;
+		count++;
+		totalMillis += millis;
+		maxMillis = Math.max(maxMillis, millis);
+	}
+
+	public synchronized long getCount() {
+		return count;
+	}
+
+	public synchronized double getMeanMillis() {
+		return count == 0 ? 0 : (double) totalMillis / count;
+	}
+
+	public synchronized long getMaxMillis() {
+		return maxMillis;
+	}
+
+	/**
+	 * return an upper bound of the given percentile of the recorded latencies
+	 *
+	 * @param percentile percentile, between 0 and 100
+	 * @return upper bound of the bucket holding the percentile, the maximum latency if it lies beyond the last bucket,
+	 *         or zero if nothing was recorded
+	 */
+	public synchronized long getPercentileMillis(double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(count * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < BOUNDS.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(BOUNDS[i], maxMillis);
+			}
+		}
+		return maxMillis;
+	}
+
+	/**
+	 * return the upper bounds of the buckets in milliseconds; the last bucket, which has no upper bound, is omitted
+	 *
+	 * @return bucket bounds
+	 */
+	public long[] getBucketBounds() {
+		return BOUNDS.clone();
+	}
+
+	/**
+	 * return the number of latencies recorded in each bucket, including a final bucket for latencies above the last
+	 * bound
+	 *
+	 * @return bucket counts
+	 */
+	public synchronized long[] getBucketCounts() {
+		return counts.clone();
+	}
+
+	public synchronized void reset() {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = 0;
+		}
+		count = 0;
+		totalMillis = 0;
+		maxMillis = 0;
+	}
+
+}
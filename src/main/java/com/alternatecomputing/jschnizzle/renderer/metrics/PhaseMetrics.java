@@ -0,0 +1,131 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency, byte and error counts of one phase of one renderer
+ */
+public class PhaseMetrics implements PhaseMetricsMBean {
+	private final String renderer;
+	private final RenderPhase phase;
+	private final LatencyHistogram latencies = new LatencyHistogram();
+	private final AtomicLong bytes = new AtomicLong();
+	private final AtomicLong errors = new AtomicLong();
+
+	/**
+	 * constructor
+	 *
+	 * @param renderer name of the renderer
+	 * @param phase render phase
+	 */
+	public PhaseMetrics(String renderer, RenderPhase phase) {
+		this.renderer = renderer;
+		this.phase = phase;
+	}
+
+	/**
+	 * record a completed execution of the phase
+	 *
+	 * @param millis duration
+	 * @param byteCount number of bytes transferred or produced, or zero
+	 */
+	public void recordSuccess(long millis, long byteCount) {
+		latencies.record(millis);
+		bytes.addAndGet(byteCount);
+	}
+
+	/**
+	 * record a failed execution of the phase
+	 *
+	 * @param millis duration until the failure
+	 */
+	public void recordFailure(long millis) {
+		latencies.record(millis);
+		errors.incrementAndGet();
+	}
+
+	public String getRenderer() {
+		return renderer;
+	}
+
+	public String getPhase() {
+		return phase.name();
+	}
+
+	public long getCount() {
+		return latencies.getCount();
+	}
+
+	public long getErrorCount() {
+		return errors.get();
+	}
+
+	public long getBytes() {
+		return bytes.get();
+	}
+
+	public double getMeanMillis() {
+		return latencies.getMeanMillis();
+	}
+
+	public long getMaxMillis() {
+		return latencies.getMaxMillis();
+	}
+
+	public long getMedianMillis() {
+		return latencies.getPercentileMillis(50);
+	}
+
+	public long get95thPercentileMillis() {
+		return latencies.getPercentileMillis(95);
+	}
+
+	public long get99thPercentileMillis() {
+		return latencies.getPercentileMillis(99);
+	}
+
+	public long[] getBucketBounds() {
+		return latencies.getBucketBounds();
+	}
+
+	public long[] getBucketCounts() {
+		return latencies.getBucketCounts();
+	}
+
+	public void reset() {
+		latencies.reset();
+		bytes.set(0);
+		errors.set(0);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buffer = new StringBuilder();
+		buffer.append(renderer).append(' ').append(phase).append(": ");
+		buffer.append(getCount()).append(" calls, ").append(getErrorCount()).append(" errors");
+		if (getBytes() > 0) {
+			buffer.append(", ").append(getBytes() / 1024).append(" KB");
+		}
+		buffer.append(", mean ").append(Math.round(getMeanMillis())).append("ms");
+		buffer.append(", p50 ").append(getMedianMillis()).append("ms");
+		buffer.append(", p95 ").append(get95thPercentileMillis()).append("ms");
+		buffer.append(", max ").append(getMaxMillis()).append("ms");
+		return buffer.toString();
+	}
+
+}
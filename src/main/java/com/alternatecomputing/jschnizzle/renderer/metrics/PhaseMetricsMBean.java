@@ -0,0 +1,49 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer.metrics;
+
+/**
+ * JMX management interface of the metrics of one render phase
+ */
+public interface PhaseMetricsMBean {
+
+	String getRenderer();
+
+	String getPhase();
+
+	long getCount();
+
+	long getErrorCount();
+
+	long getBytes();
+
+	double getMeanMillis();
+
+	long getMaxMillis();
+
+	long getMedianMillis();
+
+	long get95thPercentileMillis();
+
+	long get99thPercentileMillis();
+
+	long[] getBucketBounds();
+
+	long[] getBucketCounts();
+
+	void reset();
+
+}
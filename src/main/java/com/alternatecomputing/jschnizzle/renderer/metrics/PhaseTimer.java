@@ -0,0 +1,57 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer.metrics;
+
+/**
+ * Times one execution of a render phase. Call {@link #stop(long)} when the phase succeeds and {@link #close()} in a
+ * finally block; a timer that is closed without having been stopped records a failure.
+ */
+public class PhaseTimer {
+	private final PhaseMetrics metrics;
+	private final long startNanos = System.nanoTime();
+	private boolean finished;
+
+	PhaseTimer(PhaseMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * record the phase as successful
+	 *
+	 * @param bytes number of bytes transferred or produced by the phase, or zero
+	 */
+	public void stop(long bytes) {
+		if (!finished) {
+			finished = true;
+			metrics.recordSuccess(elapsedMillis(), bytes);
+		}
+	}
+
+	/**
+	 * record the phase as failed, unless it has already been stopped
+	 */
+	public void close() {
+		if (!finished) {
+			finished = true;
+			metrics.recordFailure(elapsedMillis());
+		}
+	}
+
+	private long elapsedMillis() {
+		return (System.nanoTime() - startNanos) / 1000000;
+	}
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alternatecomputing.jschnizzle.renderer.RendererType;
+import com.alternatecomputing.jschnizzle.renderer.util.RenderCache;
+
+/**
+ * Registry of the per-phase render metrics. Every phase of every renderer is published as a JMX MBean under the
+ * <code>com.alternatecomputing.jschnizzle</code> domain, and the phases that saw activity are written to the log every
+ * <code>jschnizzle.metrics.logInterval</code> seconds (300 by default; 0 disables the report).
+ */
+public class RenderMetrics {
+	private static final Logger LOGGER = LoggerFactory.getLogger(RenderMetrics.class);
+	private static final String DOMAIN = "com.alternatecomputing.jschnizzle";
+	private static final Map<String, PhaseMetrics> phases = new TreeMap<String, PhaseMetrics>();
+	private static final Map<String, Long> reportedCounts = new HashMap<String, Long>();
+	private static RenderCache cache;
+	private static long reportedCacheLookups;
+	private static ScheduledExecutorService reporter;
+
+	private RenderMetrics() {
+	}
+
+	/**
+	 * start timing a phase of a render
+	 *
+	 * @param rendererType renderer executing the phase
+	 * @param phase render phase
+	 * @return running timer
+	 */
+	public static PhaseTimer start(RendererType rendererType, RenderPhase phase) {
+		return new PhaseTimer(getPhaseMetrics(rendererType.name(), phase));
+	}
+
+	/**
+	 * return the metrics of the given phase of the given renderer, creating and publishing them on first use
+	 *
+	 * @param renderer name of the renderer
+	 * @param phase render phase
+	 * @return phase metrics
+	 */
+	public static synchronized PhaseMetrics getPhaseMetrics(String renderer, RenderPhase phase) {
+		String key = renderer + "." + phase;
+		PhaseMetrics metrics = phases.get(key);
+		if (metrics == null) {
+			metrics = new PhaseMetrics(renderer, phase);
+			phases.put(key, metrics);
+			registerMBean("type=RenderPhase,renderer=" + renderer + ",phase=" + phase, metrics);
+			startReporter();
+		}
+		return metrics;
+	}
+
+	/**
+	 * return the metrics of every phase timed so far
+	 *
+	 * @return phase metrics, ordered by renderer and phase
+	 */
+	public static synchronized List<PhaseMetrics> getPhaseMetrics() {
+		return Collections.unmodifiableList(new ArrayList<PhaseMetrics>(phases.values()));
+	}
+
+	/**
+	 * publish the given render cache's statistics and include them in the periodic report
+	 *
+	 * @param renderCache render cache
+	 */
+	public static synchronized void registerCache(RenderCache renderCache) {
+		cache = renderCache;
+		registerMBean("type=RenderCache", renderCache);
+		startReporter();
+	}
+
+	/**
+	 * register an MBean with the platform MBean server. Failures are logged, as metrics must never prevent rendering.
+	 *
+	 * @param properties key properties of the object name
+	 * @param mbean standard MBean
+	 */
+	public static void registerMBean(String properties, Object mbean) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(DOMAIN + ":" + properties);
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(mbean, name);
+		} catch (JMException e) {
+			LOGGER.warn("Unable to publish render metrics '" + properties + "' over JMX.", e);
+		} catch (SecurityException e) {
+			LOGGER.warn("Unable to publish render metrics '" + properties + "' over JMX.", e);
+		}
+	}
+
+	/**
+	 * write the phases and cache statistics that changed since the previous report to the log
+	 */
+	public static synchronized void report() {
+		for (Map.Entry<String, PhaseMetrics> entry : phases.entrySet()) {
+			PhaseMetrics metrics = entry.getValue();
+			Long reported = reportedCounts.get(entry.getKey());
+			if (reported == null || reported.longValue() != metrics.getCount()) {
+				reportedCounts.put(entry.getKey(), Long.valueOf(metrics.getCount()));
+				LOGGER.info(metrics.toString());
+			}
+		}
+		if (cache != null) {
+			long lookups = cache.getHitCount() + cache.getMissCount();
+			if (lookups != reportedCacheLookups) {
+				reportedCacheLookups = lookups;
+				LOGGER.info("Render cache: " + Math.round(cache.getHitRate() * 100) + "% hit rate, " + cache.getHitCount() + " hits, " + cache.getMissCount() + " misses, " + cache.getEntryCount() + " entries, " + cache.getSize() / 1024 + " KB");
+			}
+		}
+	}
+
+	private static void startReporter() {
+		long interval = Long.getLong("jschnizzle.metrics.logInterval", 300).longValue();
+		if (reporter != null || interval <= 0) {
+			return;
+		}
+		reporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "render-metrics");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		reporter.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				report();
+			}
+		}, interval, interval, TimeUnit.SECONDS);
+	}
+
+}
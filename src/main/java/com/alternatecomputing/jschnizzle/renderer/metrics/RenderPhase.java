@@ -0,0 +1,36 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer.metrics;
+
+/**
+ * The timed phases of a render
+ */
+public enum RenderPhase {
+	/** the complete render as submitted to the render executor, including any fallback and cache lookup */
+	Render,
+	/** posting the script to a remote renderer and reading its reply */
+	Post,
+	/** requesting the rendered image from a remote renderer and reading the response body */
+	Get,
+	/** parsing the JSON reply of a remote renderer */
+	Json,
+	/** parsing the script and laying out the SVG in-process */
+	Layout,
+	/** rasterizing the SVG */
+	Transcode,
+	/** decoding a raster image fetched from a remote renderer */
+	Decode
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer.provider;
+
+import com.alternatecomputing.jschnizzle.renderer.LocalWebSequenceRenderer;
+import com.alternatecomputing.jschnizzle.renderer.Renderer;
+import com.alternatecomputing.jschnizzle.renderer.RendererProvider;
+
+/**
+ * Provides the in-process sequence diagram renderer. It is the first choice when <code>jschnizzle.offline</code> is
+ * set, and otherwise the fallback for websequencediagrams.com.
+ */
+public class LocalWebSequenceRendererProvider implements RendererProvider {
+
+	public Renderer createRenderer() {
+		return new LocalWebSequenceRenderer();
+	}
+
+	public int getPriority() {
+		return Boolean.getBoolean("jschnizzle.offline") ? 10 : 200;
+	}
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Circuit breaker guarding a remote endpoint. After a run of consecutive failures the breaker opens and requests fail
+ * fast; once the open period has elapsed a single trial request is let through, and its outcome either closes the
+ * breaker again or re-opens it.
+ */
+public class CircuitBreaker {
+	private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+	private final String name;
+	private final int failureThreshold;
+	private final long openMillis;
+	private State state = State.Closed;
+	private int consecutiveFailures;
+	private long openedAt;
+	private boolean trialInProgress;
+	private long tripCount;
+
+	/**
+	 * Breaker states
+	 */
+	public enum State {
+		Closed, Open, HalfOpen
+	}
+
+	/**
+	 * constructor
+	 *
+	 * @param name name of the guarded endpoint, used in log messages
+	 * @param failureThreshold number of consecutive failures that opens the breaker
+	 * @param openMillis how long the breaker stays open before a trial request is allowed
+	 */
+	public CircuitBreaker(String name, int failureThreshold, long openMillis) {
+		this.name = name;
+		this.failureThreshold = failureThreshold;
+		this.openMillis = openMillis;
+	}
+
+	/**
+	 * return whether a request may be attempted now
+	 *
+	 * @return true if the request may proceed, false if it should fail fast
+	 */
+	public synchronized boolean allowRequest() {
+		switch (state) {
+			case Closed:
+				return true;
+			case Open:
+				if (System.currentTimeMillis() - openedAt < openMillis) {
+					return false;
+				}
+				state = State.HalfOpen;
+				trialInProgress = true;
+				LOGGER.info("Trying " + name + " again.");
+				return true;
+			default: // HalfOpen
+				if (trialInProgress) {
+					return false;
+				}
+				trialInProgress = true;
+				return true;
+		}
+	}
+
+	public synchronized void recordSuccess() {
+		if (state != State.Closed) {
+			LOGGER.info(name + " is available again.");
+		}
+		state = State.Closed;
+		consecutiveFailures = 0;
+		trialInProgress = false;
+	}
+
+	public synchronized void recordFailure() {
+		consecutiveFailures++;
+		trialInProgress = false;
+		if (state == State.HalfOpen || (state == State.Closed && consecutiveFailures >= failureThreshold)) {
+			state = State.Open;
+			openedAt = System.currentTimeMillis();
+			tripCount++;
+			LOGGER.warn(name + " appears to be down after " + consecutiveFailures + " consecutive failures; failing fast for " + (openMillis / 1000) + "s.");
+		}
+	}
+
+	/**
+	 * record that a permitted request was abandoned before it produced an outcome, so that a half-open breaker lets
+	 * another trial request through
+	 */
+	public synchronized void recordAbandoned() {
+		trialInProgress = false;
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * return the number of milliseconds until an open breaker allows a trial request
+	 *
+	 * @return remaining open time, or zero if the breaker is not open
+	 */
+	public synchronized long getRemainingOpenMillis() {
+		if (state != State.Open) {
+			return 0;
+		}
+		return Math.max(0, openMillis - (System.currentTimeMillis() - openedAt));
+	}
+
+	public synchronized int getConsecutiveFailures() {
+		return consecutiveFailures;
+	}
+
+	/**
+	 * return the number of times the breaker has opened
+	 *
+	 * @return trip count
+	 */
+	public synchronized long getTripCount() {
+		return tripCount;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return name + " circuit breaker: " + state + ", " + consecutiveFailures + " consecutive failures, tripped " + tripCount + " times";
+	}
+
+}
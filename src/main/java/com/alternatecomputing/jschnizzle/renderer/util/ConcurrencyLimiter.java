@@ -0,0 +1,182 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer.util;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alternatecomputing.jschnizzle.renderer.metrics.RenderMetrics;
+
+/**
+ * Limits the number of concurrent requests to one remote endpoint, adapting the limit AIMD-style: every request that
+ * completes within twice the baseline latency raises the limit by one over the current limit, while a failure or a
+ * slow response cuts it by a quarter. The baseline is a moving average of the latency of successful requests, so that
+ * a mix of small and large diagrams does not read as congestion. Requests over the limit wait in arrival order.
+ * <p>
+ * A permit should only be held for the HTTP exchange itself: time spent decoding or transcoding a response says
+ * nothing about the endpoint. Failures are connection errors and answers that show the endpoint is failing or
+ * overloaded, such as HTTP 5xx and 429.
+ * <p>
+ * The limit stays between one and <code>jschnizzle.limit.max</code>, which defaults to the HTTP client's
+ * <code>jschnizzle.http.maxConnectionsPerHost</code> so that the limiter never admits more requests than the
+ * connection pool can serve.
+ */
+public class ConcurrencyLimiter implements ConcurrencyLimiterMBean {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrencyLimiter.class);
+	private static final double LATENCY_TOLERANCE = 2.0;
+	private static final double BACKOFF_RATIO = 0.75;
+	private static final double BASELINE_WEIGHT = 0.1;
+	private static final Map<String, ConcurrencyLimiter> limiters = new HashMap<String, ConcurrencyLimiter>();
+	private final String name;
+	private final int maxLimit;
+	private final LinkedList<Object> waiters = new LinkedList<Object>();
+	private double limit;
+	private int inFlight;
+	private double baselineMillis;
+	private long lastDecreaseAt = System.nanoTime();
+	private long rejectedCount;
+
+	/**
+	 * return the application-wide limiter of the endpoint serving the given URL, creating and publishing it over JMX
+	 * on first use. Renderers sharing a host and port share a limiter.
+	 *
+	 * @param url URL of the endpoint
+	 * @return concurrency limiter
+	 */
+	public static synchronized ConcurrencyLimiter forEndpoint(String url) {
+		String host;
+		try {
+			host = new URL(url).getAuthority();
+		} catch (MalformedURLException e) {
+			host = url;
+		}
+		ConcurrencyLimiter limiter = limiters.get(host);
+		if (limiter == null) {
+			int maxConnections = Integer.getInteger("jschnizzle.http.maxConnectionsPerHost", 4).intValue();
+			limiter = new ConcurrencyLimiter(host, Integer.getInteger("jschnizzle.limit.max", maxConnections).intValue());
+			limiters.put(host, limiter);
+			RenderMetrics.registerMBean("type=ConcurrencyLimit,host=" + host.replace(':', '_'), limiter);
+		}
+		return limiter;
+	}
+
+	/**
+	 * constructor
+	 *
+	 * @param name name of the limited endpoint, used in log messages
+	 * @param maxLimit upper bound of the limit, which is also its initial value
+	 */
+	public ConcurrencyLimiter(String name, int maxLimit) {
+		this.name = name;
+		this.maxLimit = Math.max(1, maxLimit);
+		this.limit = this.maxLimit;
+	}
+
+	/**
+	 * wait, in arrival order, until a request may be sent to the endpoint
+	 *
+	 * @return start time of the request in nanoseconds, to be passed to {@link #release(long, boolean)}
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public synchronized long acquire() throws InterruptedException {
+		Object ticket = new Object();
+		waiters.addLast(ticket);
+		try {
+			while (waiters.getFirst() != ticket || inFlight >= getLimit()) {
+				wait();
+			}
+		} catch (InterruptedException e) {
+			rejectedCount++;
+			throw e;
+		} finally {
+			waiters.remove(ticket);
+			notifyAll();
+		}
+		inFlight++;
+		return System.nanoTime();
+	}
+
+	/**
+	 * release a request acquired with {@link #acquire()} and adapt the limit to its outcome
+	 *
+	 * @param startNanos value returned by {@link #acquire()}
+	 * @param failed whether the endpoint failed, was overloaded or could not be reached
+	 */
+	public synchronized void release(long startNanos, boolean failed) {
+		inFlight--;
+		double millis = (System.nanoTime() - startNanos) / 1000000.0;
+		boolean slow = baselineMillis > 0 && millis > baselineMillis * LATENCY_TOLERANCE;
+		if (!failed) {
+			baselineMillis = baselineMillis == 0 ? millis : baselineMillis + (millis - baselineMillis) * BASELINE_WEIGHT;
+		}
+		if (failed || slow) {
+			// requests that were already in flight when the limit was cut say nothing new about the endpoint
+			if (startNanos - lastDecreaseAt > 0) {
+				lastDecreaseAt = System.nanoTime();
+				double previous = limit;
+				limit = Math.max(1, limit * BACKOFF_RATIO);
+				if ((int) limit < (int) previous) {
+					LOGGER.info(name + " is " + (failed ? "failing" : "slowing down") + "; limiting it to " + (int) limit + " concurrent requests.");
+				}
+			}
+		} else if (inFlight + 1 >= (int) limit) {
+			// only grow the limit while it is actually being used
+			limit = Math.min(maxLimit, limit + 1 / limit);
+		}
+		notifyAll();
+	}
+
+	public synchronized int getLimit() {
+		return (int) limit;
+	}
+
+	public int getMaxLimit() {
+		return maxLimit;
+	}
+
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	public synchronized int getQueueDepth() {
+		return waiters.size();
+	}
+
+	public synchronized double getBaselineMillis() {
+		return baselineMillis;
+	}
+
+	/**
+	 * return the number of requests that gave up waiting because they were interrupted
+	 *
+	 * @return rejected count
+	 */
+	public synchronized long getRejectedCount() {
+		return rejectedCount;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return name + " concurrency limit: " + (int) limit + " of " + maxLimit + ", " + inFlight + " in flight, " + waiters.size() + " queued";
+	}
+
+}
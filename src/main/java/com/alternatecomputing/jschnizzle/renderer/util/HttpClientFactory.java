@@ -0,0 +1,128 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer.util;
+
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alternatecomputing.jschnizzle.renderer.RendererException;
+import com.alternatecomputing.jschnizzle.renderer.RendererType;
+import com.alternatecomputing.jschnizzle.renderer.RendererUnavailableException;
+
+/**
+ * Factory for the HTTP client shared by the remote renderers. The client is thread-safe and pools keep-alive
+ * connections. It is configured from the following system properties:
+ * <ul>
+ * <li><code>jschnizzle.http.maxConnections</code> - total pool size (default 20)</li>
+ * <li><code>jschnizzle.http.maxConnectionsPerHost</code> - pool size per host (default 4)</li>
+ * <li><code>jschnizzle.http.connectTimeout</code> - connect timeout in milliseconds (default 10000)</li>
+ * <li><code>jschnizzle.http.readTimeout</code> - socket read timeout in milliseconds (default 30000)</li>
+ * <li><code>jschnizzle.http.poolTimeout</code> - time to wait for a pooled connection in milliseconds (default 30000)</li>
+ * <li><code>jschnizzle.http.idleTimeout</code> - time after which idle pooled connections are closed in milliseconds
+ * (default 60000)</li>
+ * <li><code>jschnizzle.http.proxyHost</code>, <code>jschnizzle.http.proxyPort</code> - proxy server, falling back to
+ * the standard <code>http.proxyHost</code> and <code>http.proxyPort</code> properties</li>
+ * </ul>
+ */
+public class HttpClientFactory {
+	private static final Logger LOGGER = LoggerFactory.getLogger(HttpClientFactory.class);
+	private static HttpClient client;
+
+	/**
+	 * return the shared HTTP client, creating it on first use
+	 *
+	 * @return shared HTTP client
+	 */
+	public static synchronized HttpClient getHttpClient() {
+		if (client == null) {
+			client = createHttpClient();
+		}
+		return client;
+	}
+
+	private static HttpClient createHttpClient() {
+		MultiThreadedHttpConnectionManager connectionManager = new MultiThreadedHttpConnectionManager();
+		HttpConnectionManagerParams params = connectionManager.getParams();
+		params.setMaxTotalConnections(Integer.getInteger("jschnizzle.http.maxConnections", 20).intValue());
+		params.setDefaultMaxConnectionsPerHost(Integer.getInteger("jschnizzle.http.maxConnectionsPerHost", 4).intValue());
+		params.setConnectionTimeout(Integer.getInteger("jschnizzle.http.connectTimeout", 10000).intValue());
+		params.setSoTimeout(Integer.getInteger("jschnizzle.http.readTimeout", 30000).intValue());
+		params.setStaleCheckingEnabled(true);
+		params.setTcpNoDelay(true);
+
+		IdleConnectionTimeoutThread idleThread = new IdleConnectionTimeoutThread();
+		idleThread.setName("http-idle-connection-reaper");
+		idleThread.setConnectionTimeout(Long.getLong("jschnizzle.http.idleTimeout", 60000L).longValue());
+		idleThread.setTimeoutInterval(10000L);
+		idleThread.addConnectionManager(connectionManager);
+		idleThread.start();
+
+		HttpClient httpClient = new HttpClient(connectionManager);
+		httpClient.getParams().setConnectionManagerTimeout(Long.getLong("jschnizzle.http.poolTimeout", 30000L).longValue());
+		httpClient.getParams().setContentCharset("UTF-8");
+
+		String proxyHost = System.getProperty("jschnizzle.http.proxyHost", System.getProperty("http.proxyHost"));
+		String proxyPort = System.getProperty("jschnizzle.http.proxyPort", System.getProperty("http.proxyPort"));
+		if (StringUtils.isNotBlank(proxyHost) && StringUtils.isNotBlank(proxyPort)) {
+			httpClient.getHostConfiguration().setProxy(proxyHost, Integer.parseInt(proxyPort));
+			LOGGER.info("Using HTTP proxy " + proxyHost + ":" + proxyPort + " for remote rendering.");
+		}
+		return httpClient;
+	}
+
+	/**
+	 * check the status of a response from a remote renderer
+	 *
+	 * @param rendererType renderer that sent the request
+	 * @param status response status
+	 * @throws RendererUnavailableException if the endpoint is failing or overloaded (5xx or 429)
+	 * @throws RendererException if the endpoint rejected the request
+	 */
+	public static void checkStatus(RendererType rendererType, int status) {
+		if (status >= HttpStatus.SC_INTERNAL_SERVER_ERROR || status == 429) {
+			throw new RendererUnavailableException(rendererType + " is failing (HTTP " + status + ").");
+		}
+		if (status != HttpStatus.SC_OK) {
+			throw new RendererException(rendererType + " rejected the diagram (HTTP " + status + ").");
+		}
+	}
+
+	/**
+	 * check that a response from a remote renderer is an image, rather than e.g. the HTML error page of a proxy
+	 *
+	 * @param rendererType renderer that sent the request
+	 * @param method executed request
+	 * @param status response status
+	 * @throws RendererUnavailableException if the endpoint is failing or did not answer with an image
+	 * @throws RendererException if the endpoint rejected the request
+	 */
+	public static void checkImage(RendererType rendererType, HttpMethod method, int status) {
+		checkStatus(rendererType, status);
+		Header contentType = method.getResponseHeader("Content-Type");
+		if (contentType != null && !contentType.getValue().startsWith("image/")) {
+			throw new RendererUnavailableException(rendererType + " answered with " + contentType.getValue() + " instead of an image.");
+		}
+	}
+
+}
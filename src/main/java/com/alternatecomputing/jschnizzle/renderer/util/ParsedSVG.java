@@ -0,0 +1,246 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer.util;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Dimension2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.bridge.BridgeException;
+import org.apache.batik.bridge.GVTBuilder;
+import org.apache.batik.bridge.UserAgentAdapter;
+import org.apache.batik.dom.svg.SAXSVGDocumentFactory;
+import org.apache.batik.ext.awt.RenderingHintsKeyExt;
+import org.apache.batik.gvt.CanvasGraphicsNode;
+import org.apache.batik.gvt.CompositeGraphicsNode;
+import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.transcoder.TranscoderException;
+import org.apache.batik.util.XMLResourceDescriptor;
+import org.w3c.dom.svg.SVGDocument;
+
+import com.alternatecomputing.jschnizzle.model.Diagram;
+import com.alternatecomputing.jschnizzle.model.ImageFormat;
+import com.alternatecomputing.jschnizzle.model.ImagePayload;
+
+/**
+ * SVG content parsed once into a Batik graphics tree, which can then be rasterized at any size without parsing the
+ * SVG again. The parsed SVG of each diagram is kept softly, so that zooming and exporting a diagram reuse it until the
+ * diagram's SVG changes or memory runs low.
+ */
+public class ParsedSVG {
+	private static final Map<Diagram, SoftReference<ParsedSVG>> parsedByDiagram = new WeakHashMap<Diagram, SoftReference<ParsedSVG>>();
+	private final GraphicsNode root;
+	private final double width;
+	private final double height;
+	private final Object source;
+
+	private ParsedSVG(GraphicsNode root, Dimension2D size, Object source) {
+		this.root = root;
+		this.width = size.getWidth();
+		this.height = size.getHeight();
+		this.source = source;
+	}
+
+	/**
+	 * return the parsed SVG of the given diagram, parsing it only if it has not been parsed since it last changed
+	 *
+	 * @param diagram diagram
+	 * @return parsed SVG, or null if the diagram has no SVG
+	 * @throws TranscoderException if the SVG content cannot be parsed
+	 */
+	public static ParsedSVG forDiagram(Diagram diagram) throws TranscoderException {
+		// the payload is immutable and replaced whenever the diagram's SVG changes
+		ImagePayload svg = diagram.nonBeanPayload();
+		if (svg == null || svg.getFormat() != ImageFormat.SVG) {
+			return null;
+		}
+		synchronized (parsedByDiagram) {
+			SoftReference<ParsedSVG> reference = parsedByDiagram.get(diagram);
+			ParsedSVG parsed = reference == null ? null : reference.get();
+			if (parsed != null && parsed.source == svg) {
+				return parsed;
+			}
+		}
+		ParsedSVG parsed = parse(svg.getText(), svg);
+		synchronized (parsedByDiagram) {
+			parsedByDiagram.put(diagram, new SoftReference<ParsedSVG>(parsed));
+		}
+		return parsed;
+	}
+
+	/**
+	 * parse the given SVG content
+	 *
+	 * @param svg SVG content
+	 * @return parsed SVG
+	 * @throws TranscoderException if the SVG content cannot be parsed
+	 */
+	public static ParsedSVG parse(String svg) throws TranscoderException {
+		return parse(svg, null);
+	}
+
+	private static ParsedSVG parse(String svg, Object source) throws TranscoderException {
+		try {
+			SAXSVGDocumentFactory factory = new SAXSVGDocumentFactory(XMLResourceDescriptor.getXMLParserClassName());
+			SVGDocument document = factory.createSVGDocument(null, new StringReader(svg));
+			BridgeContext context = new BridgeContext(new UserAgentAdapter());
+			GraphicsNode root = new GVTBuilder().build(context, document);
+			return new ParsedSVG(root, context.getDocumentSize(), source);
+		} catch (IOException e) {
+			throw new TranscoderException(e);
+		} catch (BridgeException e) {
+			throw new TranscoderException(e);
+		}
+	}
+
+	/**
+	 * return the natural width of the SVG
+	 *
+	 * @return width in pixels
+	 */
+	public int getWidth() {
+		return (int) Math.ceil(width);
+	}
+
+	/**
+	 * return the natural height of the SVG
+	 *
+	 * @return height in pixels
+	 */
+	public int getHeight() {
+		return (int) Math.ceil(height);
+	}
+
+	/**
+	 * rasterize the SVG at its natural size on a transparent background
+	 *
+	 * @return image
+	 */
+	public BufferedImage rasterize() {
+		return rasterize(getWidth(), getHeight(), BufferedImage.TYPE_INT_ARGB, null);
+	}
+
+	/**
+	 * rasterize the SVG scaled to the given size
+	 *
+	 * @param imageWidth width of the image
+	 * @param imageHeight height of the image
+	 * @param imageType type of the image, as defined by {@link BufferedImage}
+	 * @param background background color, or null for a transparent background
+	 * @return image
+	 */
+	public synchronized BufferedImage rasterize(int imageWidth, int imageHeight, int imageType, Color background) {
+		BufferedImage image = new BufferedImage(Math.max(1, imageWidth), Math.max(1, imageHeight), imageType);
+		Graphics2D g = image.createGraphics();
+		try {
+			g.setRenderingHint(RenderingHintsKeyExt.KEY_BUFFERED_IMAGE, new WeakReference<BufferedImage>(image));
+			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+			if (background != null) {
+				g.setColor(background);
+				g.fillRect(0, 0, image.getWidth(), image.getHeight());
+			}
+			if (width > 0 && height > 0) {
+				g.scale(imageWidth / width, imageHeight / height);
+			}
+			root.paint(g);
+		} finally {
+			g.dispose();
+		}
+		return image;
+	}
+
+	/**
+	 * rasterize one region of the SVG scaled by the given factor, painting only the parts of the graphics tree that
+	 * intersect the region
+	 *
+	 * @param scale scale factor, 1 for the natural size
+	 * @param region region of the scaled SVG to rasterize
+	 * @return image the size of the region, with a transparent background
+	 */
+	public synchronized BufferedImage rasterize(double scale, Rectangle region) {
+		BufferedImage image = new BufferedImage(Math.max(1, region.width), Math.max(1, region.height), BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+		try {
+			g.setRenderingHint(RenderingHintsKeyExt.KEY_BUFFERED_IMAGE, new WeakReference<BufferedImage>(image));
+			g.clipRect(0, 0, image.getWidth(), image.getHeight());
+			g.translate(-region.x, -region.y);
+			g.scale(scale, scale);
+			paint(g);
+		} finally {
+			g.dispose();
+		}
+		return image;
+	}
+
+	/**
+	 * paint the SVG in the user space of the given graphics context, skipping the parts of the graphics tree that lie
+	 * outside its clip
+	 *
+	 * @param g graphics context, scaled and translated as required
+	 */
+	public synchronized void paint(Graphics2D g) {
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+		paintVisible(root, g);
+	}
+
+	private static void paintVisible(GraphicsNode node, Graphics2D g) {
+		if (!node.isVisible()) {
+			return;
+		}
+		Rectangle clip = g.getClipBounds();
+		Rectangle2D bounds = node.getTransformedBounds(new AffineTransform());
+		if (clip != null && (bounds == null || !bounds.intersects(clip))) {
+			return;
+		}
+		if (clip == null || !(node instanceof CompositeGraphicsNode) || hasGroupEffects(node)) {
+			// leaves, and groups whose effects apply to all of their children, are painted whole
+			node.paint(g);
+			return;
+		}
+		AffineTransform saved = g.getTransform();
+		if (node.getTransform() != null) {
+			g.transform(node.getTransform());
+		}
+		List<?> children = (CompositeGraphicsNode) node;
+		for (Object child : children) {
+			paintVisible((GraphicsNode) child, g);
+		}
+		g.setTransform(saved);
+	}
+
+	private static boolean hasGroupEffects(GraphicsNode node) {
+		if (node.getClip() != null || node.getMask() != null || node.getFilter() != null || node.getComposite() != null) {
+			return true;
+		}
+		return node instanceof CanvasGraphicsNode && ((CanvasGraphicsNode) node).getBackgroundPaint() != null;
+	}
+
+}
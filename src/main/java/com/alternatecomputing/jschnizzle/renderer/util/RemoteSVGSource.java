@@ -0,0 +1,70 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer.util;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.methods.GetMethod;
+
+import com.alternatecomputing.jschnizzle.renderer.RendererType;
+import com.alternatecomputing.jschnizzle.renderer.metrics.PhaseTimer;
+import com.alternatecomputing.jschnizzle.renderer.metrics.RenderMetrics;
+import com.alternatecomputing.jschnizzle.renderer.metrics.RenderPhase;
+
+/**
+ * Fetches the SVG of a diagram that a remote renderer has already rendered, for diagrams that were only fetched as a
+ * raster image for display
+ */
+public class RemoteSVGSource implements Callable<String> {
+	private final RendererType rendererType;
+	private final String uri;
+
+	/**
+	 * constructor
+	 *
+	 * @param rendererType renderer that rendered the diagram
+	 * @param uri URI of the rendered SVG
+	 */
+	public RemoteSVGSource(RendererType rendererType, String uri) {
+		this.rendererType = rendererType;
+		this.uri = uri;
+	}
+
+	public String call() throws IOException, InterruptedException {
+		ConcurrencyLimiter limiter = ConcurrencyLimiter.forEndpoint(uri);
+		long started = limiter.acquire();
+		boolean failed = true;
+		GetMethod getMethod = new GetMethod(uri);
+		PhaseTimer timer = RenderMetrics.start(rendererType, RenderPhase.Get);
+		try {
+			int status = HttpClientFactory.getHttpClient().executeMethod(getMethod);
+			failed = status >= HttpStatus.SC_INTERNAL_SERVER_ERROR || status == 429;
+			if (status != HttpStatus.SC_OK) {
+				throw new IOException(rendererType + " no longer has the SVG of this diagram (HTTP " + status + "); render it again.");
+			}
+			String svgContents = getMethod.getResponseBodyAsString();
+			timer.stop(svgContents.length());
+			return svgContents;
+		} finally {
+			timer.close();
+			getMethod.releaseConnection();
+			limiter.release(started, failed);
+		}
+	}
+
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alternatecomputing.jschnizzle.renderer.metrics.RenderMetrics;
+
+/**
+ * Persistent, size-capped, least-recently-used cache of rendered SVG content. Entries are stored one file per key in
+ * the cache directory; the recency order survives restarts through the files' modification times.
+ */
+public class RenderCache implements RenderCacheMBean {
+	private static final Logger LOGGER = LoggerFactory.getLogger(RenderCache.class);
+	private static final String SUFFIX = ".svg";
+	private static final long DEFAULT_MAX_BYTES = 100L * 1024 * 1024;
+	private static RenderCache instance;
+	private final File directory;
+	private final long maxBytes;
+	private final LinkedHashMap<String, Long> entries = new LinkedHashMap<String, Long>(256, 0.75f, true);
+	private long currentBytes;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * return the application-wide cache, configured from the <code>jschnizzle.cache.dir</code> and
+	 * <code>jschnizzle.cache.maxBytes</code> system properties. Its statistics are published over JMX.
+	 *
+	 * @return render cache
+	 */
+	public static synchronized RenderCache getInstance() {
+		if (instance == null) {
+			String dir = System.getProperty("jschnizzle.cache.dir");
+			if (dir == null) {
+				dir = System.getProperty("user.home") + File.separator + ".jschnizzle" + File.separator + "cache";
+			}
+			long maxBytes = Long.getLong("jschnizzle.cache.maxBytes", DEFAULT_MAX_BYTES).longValue();
+			instance = new RenderCache(new File(dir), maxBytes);
+			RenderMetrics.registerCache(instance);
+		}
+		return instance;
+	}
+
+	/**
+	 * constructor
+	 *
+	 * @param directory directory holding the cache entries
+	 * @param maxBytes maximum total size of the cache entries
+	 */
+	public RenderCache(File directory, long maxBytes) {
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			LOGGER.warn("Unable to create render cache directory '" + directory + "'.");
+		}
+		load();
+	}
+
+	/**
+	 * return the cached SVG content for the given key
+	 *
+	 * @param key render key
+	 * @return SVG content, or null if not cached
+	 */
+	public String get(String key) {
+		synchronized (entries) {
+			if (entries.get(key) == null) { // get, rather than containsKey, to update the access order
+				misses.incrementAndGet();
+				return null;
+			}
+		}
+		File file = fileFor(key);
+		try {
+			String svg = new String(read(file), "UTF-8");
+			file.setLastModified(System.currentTimeMillis());
+			hits.incrementAndGet();
+			return svg;
+		} catch (IOException e) {
+			LOGGER.warn("Discarding unreadable render cache entry '" + file + "'.", e);
+			remove(key);
+			misses.incrementAndGet();
+			return null;
+		}
+	}
+
+	/**
+	 * store the given SVG content under the given key, evicting least-recently-used entries as needed
+	 *
+	 * @param key render key
+	 * @param svg SVG content
+	 */
+	public void put(String key, String svg) {
+		File file = fileFor(key);
+		File tmp = new File(directory, key + ".tmp");
+		try {
+			byte[] bytes = svg.getBytes("UTF-8");
+			if (bytes.length > maxBytes) {
+				return;
+			}
+			write(tmp, bytes);
+			file.delete();
+			if (!tmp.renameTo(file)) {
+				throw new IOException("unable to rename '" + tmp + "' to '" + file + "'");
+			}
+			synchronized (entries) {
+				Long previous = entries.put(key, Long.valueOf(bytes.length));
+				if (previous != null) {
+					currentBytes -= previous.longValue();
+				}
+				currentBytes += bytes.length;
+				evict();
+			}
+		} catch (IOException e) {
+			tmp.delete();
+			LOGGER.warn("Unable to write render cache entry '" + file + "'.", e);
+		}
+	}
+
+	/**
+	 * remove all entries from the cache
+	 */
+	public void clear() {
+		synchronized (entries) {
+			for (String key : entries.keySet()) {
+				fileFor(key).delete();
+			}
+			entries.clear();
+			currentBytes = 0;
+		}
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * return the fraction of lookups that were served from the cache
+	 *
+	 * @return hit rate between 0 and 1, or 0 if there were no lookups
+	 */
+	public double getHitRate() {
+		long hitCount = hits.get();
+		long lookups = hitCount + misses.get();
+		return lookups == 0 ? 0 : (double) hitCount / lookups;
+	}
+
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	public int getEntryCount() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public long getSize() {
+		synchronized (entries) {
+			return currentBytes;
+		}
+	}
+
+	public long getMaxSize() {
+		return maxBytes;
+	}
+
+	@Override
+	public String toString() {
+		return "RenderCache[dir=" + directory + ", entries=" + getEntryCount() + ", bytes=" + getSize() + "/" + maxBytes + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + "]";
+	}
+
+	private void remove(String key) {
+		synchronized (entries) {
+			Long size = entries.remove(key);
+			if (size != null) {
+				currentBytes -= size.longValue();
+			}
+		}
+		fileFor(key).delete();
+	}
+
+	private void evict() {
+		Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+		while (currentBytes > maxBytes && iterator.hasNext()) {
+			Map.Entry<String, Long> eldest = iterator.next();
+			iterator.remove();
+			currentBytes -= eldest.getValue().longValue();
+			fileFor(eldest.getKey()).delete();
+			evictions.incrementAndGet();
+		}
+	}
+
+	private void load() {
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		Arrays.sort(files, new Comparator<File>() {
+			public int compare(File f1, File f2) {
+				long m1 = f1.lastModified();
+				long m2 = f2.lastModified();
+				return m1 < m2 ? -1 : (m1 == m2 ? 0 : 1);
+			}
+		});
+		synchronized (entries) {
+			for (File file : files) {
+				String name = file.getName();
+				if (name.endsWith(SUFFIX)) {
+					entries.put(name.substring(0, name.length() - SUFFIX.length()), Long.valueOf(file.length()));
+					currentBytes += file.length();
+				} else if (name.endsWith(".tmp")) {
+					file.delete(); // left over from an interrupted write
+				}
+			}
+			evict();
+		}
+		LOGGER.debug("Loaded " + this);
+	}
+
+	private File fileFor(String key) {
+		return new File(directory, key + SUFFIX);
+	}
+
+	private static byte[] read(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream((int) file.length());
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				bos.write(buffer, 0, n);
+			}
+			return bos.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void write(File file, byte[] bytes) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(bytes);
+		} finally {
+			out.close();
+		}
+	}
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer.util;
+
+/**
+ * JMX management interface of the render cache
+ */
+public interface RenderCacheMBean {
+
+	long getHitCount();
+
+	long getMissCount();
+
+	double getHitRate();
+
+	long getEvictionCount();
+
+	int getEntryCount();
+
+	long getSize();
+
+	long getMaxSize();
+
+	void clear();
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpMethodBase;
+
+import com.alternatecomputing.jschnizzle.util.CompressedText;
+
+/**
+ * Response body read into a single buffer sized from the response's content length, so that it can be read while
+ * the connection is held, and parsed and compressed after it has been released without being copied again
+ */
+public final class ResponseBody {
+	private static final int DEFAULT_CAPACITY = 8192;
+	// XML documents are UTF-8 unless the response says otherwise
+	private static final String DEFAULT_CHARSET = "UTF-8";
+	private static final Pattern CHARSET = Pattern.compile("charset\\s*=\\s*\"?([^\\s;\"]+)", Pattern.CASE_INSENSITIVE);
+	private final byte[] buffer;
+	private final int length;
+	private final String charset;
+
+	private ResponseBody(byte[] buffer, int length, String charset) {
+		this.buffer = buffer;
+		this.length = length;
+		this.charset = charset;
+	}
+
+	/**
+	 * read the body of the given response
+	 *
+	 * @param method executed method
+	 * @return response body, empty if the response has none
+	 * @throws IOException if the body cannot be read
+	 */
+	public static ResponseBody read(HttpMethodBase method) throws IOException {
+		InputStream in = method.getResponseBodyAsStream();
+		long expectedLength = method.getResponseContentLength();
+		byte[] buffer = new byte[expectedLength > 0 && expectedLength < Integer.MAX_VALUE ? (int) expectedLength : DEFAULT_CAPACITY];
+		int count = 0;
+		if (in != null) {
+			try {
+				int read;
+				while ((read = in.read(buffer, count, buffer.length - count)) != -1) {
+					count += read;
+					if (count == buffer.length) {
+						// the content length was unknown or understated
+						int b = in.read();
+						if (b == -1) {
+							break;
+						}
+						byte[] expanded = new byte[buffer.length * 2];
+						System.arraycopy(buffer, 0, expanded, 0, count);
+						buffer = expanded;
+						buffer[count++] = (byte) b;
+					}
+				}
+			} finally {
+				in.close();
+			}
+		}
+		return new ResponseBody(buffer, count, charsetOf(method.getResponseHeader("Content-Type")));
+	}
+
+	/**
+	 * return the number of bytes in the body
+	 *
+	 * @return body length
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * open a stream over the body, without copying it
+	 *
+	 * @return body stream
+	 */
+	public InputStream openStream() {
+		return new ByteArrayInputStream(buffer, 0, length);
+	}
+
+	/**
+	 * compress the body as text, straight from the buffer unless it is in a character set other than UTF-8
+	 *
+	 * @return compressed text
+	 * @throws UnsupportedEncodingException if the character set of the body is not supported
+	 */
+	public CompressedText toCompressedText() throws UnsupportedEncodingException {
+		if (DEFAULT_CHARSET.equalsIgnoreCase(charset) || "US-ASCII".equalsIgnoreCase(charset)) {
+			return new CompressedText(buffer, 0, length);
+		}
+		return new CompressedText(getText());
+	}
+
+	/**
+	 * decode the body as text
+	 *
+	 * @return text
+	 * @throws UnsupportedEncodingException if the character set of the body is not supported
+	 */
+	public String getText() throws UnsupportedEncodingException {
+		return new String(buffer, 0, length, charset);
+	}
+
+	private static String charsetOf(Header contentType) {
+		Matcher matcher = contentType == null ? null : CHARSET.matcher(contentType.getValue());
+		return matcher != null && matcher.find() ? matcher.group(1) : DEFAULT_CHARSET;
+	}
+
+}
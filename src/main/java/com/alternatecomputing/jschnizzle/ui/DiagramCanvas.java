@@ -0,0 +1,93 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.ui;
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Point;
+
+import javax.swing.JComponent;
+
+import com.alternatecomputing.jschnizzle.renderer.util.ParsedSVG;
+
+/**
+ * Component that paints a diagram's parsed SVG straight onto the screen at any scale. Unlike a rasterized image, only
+ * the part of the diagram inside the visible clip is painted, and changing the scale allocates nothing.
+ */
+public class DiagramCanvas extends JComponent {
+	private static final long serialVersionUID = -2318744790236465802L;
+	private final ParsedSVG svg;
+	private double scale = 1;
+
+	/**
+	 * constructor
+	 *
+	 * @param svg parsed SVG to paint
+	 */
+	public DiagramCanvas(ParsedSVG svg) {
+		this.svg = svg;
+		setOpaque(false);
+	}
+
+	/**
+	 * set the scale at which the diagram is painted
+	 *
+	 * @param scale scale factor, 1 for the natural size
+	 */
+	public void setScale(double scale) {
+		this.scale = scale;
+		revalidate();
+		repaint();
+	}
+
+	public double getScale() {
+		return scale;
+	}
+
+	public ParsedSVG getSVG() {
+		return svg;
+	}
+
+	@Override
+	public Dimension getPreferredSize() {
+		return new Dimension(Math.max(1, (int) Math.ceil(svg.getWidth() * scale)), Math.max(1, (int) Math.ceil(svg.getHeight() * scale)));
+	}
+
+	@Override
+	protected void paintComponent(Graphics g) {
+		Graphics2D g2 = (Graphics2D) g.create();
+		try {
+			Point origin = getDiagramOrigin();
+			g2.translate(origin.x, origin.y);
+			g2.scale(scale, scale);
+			svg.paint(g2);
+		} finally {
+			g2.dispose();
+		}
+	}
+
+	/**
+	 * return where the top left corner of the scaled diagram is painted, centering it like a label centers its icon
+	 *
+	 * @return origin of the diagram in component coordinates
+	 */
+	protected Point getDiagramOrigin() {
+		Dimension size = getPreferredSize();
+		return new Point(Math.max(0, (getWidth() - size.width) / 2), Math.max(0, (getHeight() - size.height) / 2));
+	}
+
+}
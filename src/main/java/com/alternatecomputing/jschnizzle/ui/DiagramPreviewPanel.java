@@ -0,0 +1,186 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.ui;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Image;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.Future;
+
+import javax.swing.ImageIcon;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alternatecomputing.jschnizzle.model.Diagram;
+import com.alternatecomputing.jschnizzle.model.DiagramStyle;
+import com.alternatecomputing.jschnizzle.renderer.RenderCallback;
+import com.alternatecomputing.jschnizzle.renderer.Renderer;
+import com.alternatecomputing.jschnizzle.renderer.RendererException;
+import com.alternatecomputing.jschnizzle.renderer.RendererFactory;
+import com.alternatecomputing.jschnizzle.renderer.ScriptCanonicalizer;
+
+/**
+ * Panel showing a live preview of a diagram while it is being edited. Preview renders are debounced, and a newer
+ * edit cancels the render for an older one, interrupting it if it is already in flight.
+ */
+public class DiagramPreviewPanel extends JPanel {
+	private static final long serialVersionUID = -2412950286164203455L;
+	private static final Logger LOGGER = LoggerFactory.getLogger(DiagramPreviewPanel.class);
+	private static final int DEBOUNCE_DELAY = Integer.getInteger("jschnizzle.preview.delay", 750).intValue();
+	private final Diagram diagram;
+	private final JLabel imageLabel;
+	private final Timer debounceTimer;
+	private Diagram pending;
+	private Future<BufferedImage> pendingFuture;
+	private Diagram rendered;
+
+	/**
+	 * constructor
+	 *
+	 * @param diagram diagram being edited; it is not modified by the preview
+	 */
+	public DiagramPreviewPanel(Diagram diagram) {
+		super(new BorderLayout());
+		this.diagram = diagram;
+		imageLabel = new JLabel("", SwingConstants.CENTER);
+		imageLabel.setVerticalAlignment(SwingConstants.CENTER);
+		imageLabel.setOpaque(true);
+		imageLabel.setBackground(Color.WHITE);
+		add(new JScrollPane(imageLabel), BorderLayout.CENTER);
+		debounceTimer = new Timer(DEBOUNCE_DELAY, new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				renderPreview();
+			}
+		});
+		debounceTimer.setRepeats(false);
+		Image image = diagram.nonBeanCachedImage();
+		if (image != null) {
+			imageLabel.setIcon(new ImageIcon(image));
+		} else if (diagram.getScript() != null) {
+			// the image of a diagram read from a project container may not have been decoded yet
+			pending = previewOf(diagram.getStyle(), diagram.getScript());
+			renderPreview();
+		}
+	}
+
+	/**
+	 * schedule a preview render of the given style and script once editing pauses
+	 *
+	 * @param style diagram style
+	 * @param script diagram script
+	 */
+	public void scheduleRender(DiagramStyle style, String script) {
+		pending = previewOf(style, script);
+		cancelPendingRender();
+		debounceTimer.restart();
+	}
+
+	private Diagram previewOf(DiagramStyle style, String script) {
+		Diagram preview = new Diagram();
+		preview.setName(diagram.getName());
+		preview.setType(diagram.getType());
+		preview.setStyle(style);
+		preview.setScript(script);
+		preview.nonBeanPreview(true);
+		return preview;
+	}
+
+	/**
+	 * return the preview render for the given style and script, if the preview is up to date with them
+	 *
+	 * @param style diagram style
+	 * @param script diagram script
+	 * @return rendered preview diagram, or null if no matching preview has been rendered
+	 */
+	public Diagram getRenderedPreview(DiagramStyle style, String script) {
+		Diagram preview = rendered;
+		if (preview != null && preview.nonBeanCachedImage() != null && ScriptCanonicalizer.isEquivalent(preview.getType(), script, preview.getScript()) && style != null && style.equals(preview.getStyle())) {
+			return preview;
+		}
+		return null;
+	}
+
+	/**
+	 * stop any scheduled or in-flight preview render
+	 */
+	public void dispose() {
+		debounceTimer.stop();
+		pending = null;
+		cancelPendingRender();
+	}
+
+	private void cancelPendingRender() {
+		if (pendingFuture != null) {
+			// previews fly on their own, so no other render is waiting on this one
+			pendingFuture.cancel(true);
+			pendingFuture = null;
+		}
+	}
+
+	private void renderPreview() {
+		final Diagram preview = pending;
+		if (preview == null || preview.getScript().trim().length() == 0) {
+			return;
+		}
+		if (getRenderedPreview(preview.getStyle(), preview.getScript()) != null) {
+			return; // already showing this script and style
+		}
+		try {
+			Renderer renderer = RendererFactory.getRendererForDiagram(preview);
+			pendingFuture = renderer.renderAsync(preview, new RenderCallback() {
+				public void renderCompleted(Diagram diagram, final BufferedImage image) {
+					diagram.nonBeanImage(image);
+					SwingUtilities.invokeLater(new Runnable() {
+						public void run() {
+							if (pending == preview) {
+								rendered = preview;
+								pendingFuture = null;
+								imageLabel.setText("");
+								imageLabel.setIcon(new ImageIcon(image));
+							}
+						}
+					});
+				}
+
+				public void renderFailed(Diagram diagram, final Throwable cause) {
+					LOGGER.debug("Preview render failed.", cause);
+					SwingUtilities.invokeLater(new Runnable() {
+						public void run() {
+							if (pending == preview) {
+								pendingFuture = null;
+								imageLabel.setIcon(null);
+								imageLabel.setText("Preview unavailable");
+							}
+						}
+					});
+				}
+			});
+		} catch (RendererException e) {
+			LOGGER.debug("Preview render not scheduled.", e);
+		}
+	}
+
+}
@@ -22,7 +22,9 @@ import java.awt.Dimension;
 import java.awt.Image;
 import java.awt.event.MouseListener;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import javax.swing.ImageIcon;
 import javax.swing.JLabel;
@@ -30,28 +32,52 @@ import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JSlider;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
 import org.apache.batik.transcoder.TranscoderException;
-import org.apache.batik.transcoder.TranscoderInput;
-import org.apache.batik.transcoder.image.PNGTranscoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.alternatecomputing.jschnizzle.model.Diagram;
-import com.alternatecomputing.jschnizzle.renderer.util.BufferedImageTranscoder;
+import com.alternatecomputing.jschnizzle.renderer.util.ParsedSVG;
 import com.jgoodies.forms.layout.CellConstraints;
 import com.jgoodies.forms.layout.FormLayout;
 
 public class ImagePanel extends JPanel {
 	private static final long serialVersionUID = 8899749112300691634L;
 	private static final Logger LOGGER = LoggerFactory.getLogger(ImagePanel.class);
+	private static final boolean VECTOR_CANVAS = Boolean.getBoolean("jschnizzle.ui.vectorCanvas");
+	private static final boolean TILED_CANVAS = Boolean.getBoolean("jschnizzle.ui.tiledCanvas");
+	private static final ExecutorService imageLoader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "image-loader");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	private static final ExecutorService svgFetcher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "svg-fetcher");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
 	private Diagram diagram;
 	private JPanel diagramPanel;
+	private DiagramCanvas canvas;
+	private ZoomPyramid pyramid;
+	private Diagram fetching;
+	private Diagram loading;
 	private JSlider scaleSlider;
 	private static final int INTERVALS = 10;
 
+	/**
+	 * constructor. With the <code>jschnizzle.ui.vectorCanvas</code> system property set, diagrams are painted from
+	 * their SVG at every scale instead of being shown as rasterized images. With <code>jschnizzle.ui.tiledCanvas</code>
+	 * set, only the visible tiles of the scaled diagram are rasterized, in the background.
+	 */
 	public ImagePanel() {
 		super();
 		this.setLayout(new FormLayout("fill:min:grow, pref, 4dlu, pref, 4dlu", "fill:min:grow, 4dlu, pref, 4dlu"));
@@ -75,8 +101,14 @@ public class ImagePanel extends JPanel {
 
 			public void stateChanged(ChangeEvent e) {
 				if (diagram != null) {
-					if (slider.getValue() == INTERVALS / 2) {
+					if (canvas != null) {
+						// the canvas paints the SVG at any scale without rasterizing it
+						canvas.setScale(slider.getValue() * 2.0 / INTERVALS);
+						diagramPanel.setPreferredSize(canvas.getPreferredSize());
+					} else if (slider.getValue() == INTERVALS / 2) {
 						setDiagram(diagram); // use original at full size
+					} else if (pyramid != null && pyramid.getLevel(slider.getValue()) != null) {
+						showScaledImage(pyramid.getLevel(slider.getValue()));
 					} else {
 						if (slider.getValueIsAdjusting()) {
 							resizeImage(slider, Image.SCALE_FAST);
@@ -91,20 +123,57 @@ public class ImagePanel extends JPanel {
 		return slider;
 	}
 
+	/**
+	 * show the given diagram. An image that is not at hand, e.g. of a diagram read from a project container, is loaded
+	 * in the background, and the diagram is shown again once it has been.
+	 *
+	 * @param diagram diagram to show, or null
+	 */
 	public void setDiagram(Diagram diagram) {
+		setDiagram(diagram, diagram == null ? null : diagram.nonBeanCachedImage());
+	}
+
+	private void setDiagram(Diagram diagram, Image image) {
 		if (diagramPanel.getComponentCount() != 0) {
 			diagramPanel.removeAll();
 		}
+		if (pyramid != null && (diagram != this.diagram || diagram == null || pyramid.getImage() != image)) {
+			pyramid.cancel();
+			pyramid = null;
+		}
 		this.diagram = diagram;
+		this.canvas = null;
 		scaleSlider.setValue(INTERVALS / 2);
-		if (diagram != null) {
-			BufferedImage image = (BufferedImage) diagram.nonBeanImage();
-			if (image != null) {
-				int width = image.getWidth();
-				int height = image.getHeight();
+		if (diagram != null && (VECTOR_CANVAS || TILED_CANVAS) && !diagram.hasEncodedImage()) {
+			// show the raster image until the SVG of a raster render arrives
+			fetchSVG(diagram);
+		} else if (diagram != null && (VECTOR_CANVAS || TILED_CANVAS)) {
+			try {
+				ParsedSVG svg = ParsedSVG.forDiagram(diagram);
+				if (svg != null) {
+					canvas = TILED_CANVAS ? new TiledDiagramCanvas(svg, image) : new DiagramCanvas(svg);
+					diagramPanel.setPreferredSize(canvas.getPreferredSize());
+					diagramPanel.add(canvas, BorderLayout.CENTER);
+				}
+			} catch (TranscoderException e) {
+				LOGGER.error("Error parsing SVG image; showing the rendered image instead", e);
+			}
+		}
+		if (diagram != null && canvas == null) {
+			if (image == null) {
+				diagramPanel.setPreferredSize(null);
+				diagramPanel.add(new JLabel("Loading diagram...", SwingConstants.CENTER), BorderLayout.CENTER);
+				loadImage(diagram);
+			} else {
+				BufferedImage bufferedImage = (BufferedImage) image;
+				int width = bufferedImage.getWidth();
+				int height = bufferedImage.getHeight();
 				diagramPanel.setPreferredSize(new Dimension(width, height)); // reset size to remove sticky scrollbars
-				if (diagram != null) {
-					diagramPanel.add(new JLabel(new ImageIcon(diagram.nonBeanImage())), BorderLayout.CENTER);
+				diagramPanel.add(new JLabel(new ImageIcon(image)), BorderLayout.CENTER);
+				if (pyramid == null) {
+					// prepare every zoom step in the background so that the slider only swaps images
+					pyramid = new ZoomPyramid(diagram, bufferedImage, INTERVALS);
+					pyramid.start();
 				}
 			}
 		}
@@ -112,8 +181,23 @@ public class ImagePanel extends JPanel {
 		diagramPanel.repaint();
 	}
 
+	private void showScaledImage(BufferedImage image) {
+		synchronized (diagramPanel) {
+			diagramPanel.setPreferredSize(new Dimension(image.getWidth(), image.getHeight()));
+			if (diagramPanel.getComponentCount() != 0) {
+				diagramPanel.removeAll();
+			}
+			diagramPanel.add(new JLabel(new ImageIcon(image)), BorderLayout.CENTER);
+		}
+	}
+
 	private void resizeImage(final JSlider slider, int hints) {
-		BufferedImage image = (BufferedImage) diagram.nonBeanImage();
+		BufferedImage image = (BufferedImage) diagram.nonBeanCachedImage();
+		if (image == null) {
+			// shown at the current scale once it has been loaded
+			loadImage(diagram);
+			return;
+		}
 		float width = image.getWidth() * slider.getValue() / INTERVALS * 2;
 		float height = image.getHeight() * slider.getValue() / INTERVALS * 2;
 		JLabel scaledComponent = new JLabel(new ImageIcon(image.getScaledInstance(Math.max(1, (int) width), Math.max(1, (int) height), hints)));
@@ -127,17 +211,28 @@ public class ImagePanel extends JPanel {
 	}
 
 	private void resizeFromSVG(JSlider slider) {
-		BufferedImage image = (BufferedImage) diagram.nonBeanImage();
+		BufferedImage image = (BufferedImage) diagram.nonBeanCachedImage();
+		if (image == null) {
+			loadImage(diagram);
+			return;
+		}
 		float width = image.getWidth() * slider.getValue() / INTERVALS * 2;
 		float height = image.getHeight() * slider.getValue() / INTERVALS * 2;
-		byte[] svgBytes = diagram.getEncodedImage().getBytes();
-		TranscoderInput input = new TranscoderInput(new ByteArrayInputStream(svgBytes));
-		BufferedImageTranscoder imageTranscoder = new BufferedImageTranscoder();
-		imageTranscoder.addTranscodingHint(PNGTranscoder.KEY_WIDTH, width);
-	    imageTranscoder.addTranscodingHint(PNGTranscoder.KEY_HEIGHT, height);
-	    try {
-			imageTranscoder.transcode(input, null);
-			BufferedImage bufferedImage = imageTranscoder.getBufferedImage();
+		if (!diagram.hasEncodedImage()) {
+			// scale the raster image until the SVG of a raster render arrives
+			resizeImage(slider, Image.SCALE_SMOOTH);
+			fetchSVG(diagram);
+			return;
+		}
+		try {
+			// rasterize from the diagram's parsed SVG, which is only parsed again when the SVG changes
+			ParsedSVG svg = ParsedSVG.forDiagram(diagram);
+			if (svg == null) {
+				// diagrams saved by early versions only have a raster image
+				resizeImage(slider, Image.SCALE_SMOOTH);
+				return;
+			}
+			BufferedImage bufferedImage = svg.rasterize((int) width, (int) height, BufferedImage.TYPE_INT_ARGB, null);
 			JLabel scaledComponent = new JLabel(new ImageIcon(bufferedImage));
 			synchronized (diagramPanel) {
 				diagramPanel.setPreferredSize(new Dimension((int) width, (int) height));
@@ -151,6 +246,75 @@ public class ImagePanel extends JPanel {
 		}
 	}
 
+	/**
+	 * decode the image of the given diagram in the background, reading its encoded image first if it has been
+	 * deferred, and show the diagram again at the current scale once it has been decoded if it is still displayed
+	 */
+	private void loadImage(final Diagram diagram) {
+		if (loading == diagram) {
+			return;
+		}
+		loading = diagram;
+		imageLoader.execute(new Runnable() {
+			public void run() {
+				final Image image = diagram.nonBeanImage();
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						if (loading == diagram) {
+							loading = null;
+						}
+						if (ImagePanel.this.diagram == diagram) {
+							if (image == null) {
+								diagramPanel.removeAll();
+								diagramPanel.repaint();
+								return;
+							}
+							int scale = scaleSlider.getValue();
+							setDiagram(diagram, image);
+							scaleSlider.setValue(scale);
+							validate();
+						}
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * fetch the deferred SVG of the given diagram in the background, showing the diagram again at the current scale
+	 * once it has arrived if it is still displayed. Failed fetches back off inside the diagram, so asking again on every
+	 * zoom step does not go back to the network each time.
+	 */
+	private void fetchSVG(final Diagram diagram) {
+		if (fetching == diagram || diagram.nonBeanEncodedImageSource() == null) {
+			return;
+		}
+		fetching = diagram;
+		svgFetcher.execute(new Runnable() {
+			public void run() {
+				final boolean fetched = diagram.nonBeanPayload() != null;
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						if (fetching == diagram) {
+							fetching = null;
+						}
+						if (fetched && ImagePanel.this.diagram == diagram) {
+							if (pyramid != null) {
+								// it was scaled from the raster image; build it again from the SVG
+								pyramid.cancel();
+								pyramid = null;
+							}
+							int scale = scaleSlider.getValue();
+							setDiagram(diagram);
+							scaleSlider.setValue(scale);
+							validate();
+						}
+					}
+				});
+			}
+		});
+	}
+
 	public Diagram getDiagram() {
 		return diagram;
 	}
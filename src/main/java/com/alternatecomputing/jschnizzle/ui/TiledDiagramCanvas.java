@@ -0,0 +1,187 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.ui;
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.SwingUtilities;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alternatecomputing.jschnizzle.renderer.util.ParsedSVG;
+
+/**
+ * Diagram canvas that rasterizes only the tiles of the scaled diagram that intersect the visible clip, on a background
+ * thread. A single thread is used because a parsed SVG's graphics tree can only be painted by one thread at a time.
+ * Rasterized tiles are kept in a least-recently-used cache of <code>jschnizzle.ui.tileCacheSize</code> tiles
+ * (128 by default), and tiles that are not ready yet show the diagram's rendered image scaled up as a placeholder.
+ * Memory use is therefore bounded by the cache size rather than by the diagram size and zoom.
+ */
+public class TiledDiagramCanvas extends DiagramCanvas {
+	private static final long serialVersionUID = 4126702386415370813L;
+	private static final Logger LOGGER = LoggerFactory.getLogger(TiledDiagramCanvas.class);
+	private static final int TILE_SIZE = 256;
+	private static final int MAX_TILES = Integer.getInteger("jschnizzle.ui.tileCacheSize", 128).intValue();
+	private static final ExecutorService tileExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "tile-renderer");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	private final Image placeholder;
+	// tiles and pending requests are only touched on the event dispatch thread
+	private final Map<Point, BufferedImage> tiles = new LinkedHashMap<Point, BufferedImage>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Point, BufferedImage> eldest) {
+			return size() > MAX_TILES;
+		}
+	};
+	private final Set<Point> pending = new HashSet<Point>();
+	private volatile int generation;
+
+	/**
+	 * constructor
+	 *
+	 * @param svg parsed SVG to paint
+	 * @param placeholder low resolution image of the diagram shown until tiles are ready, or null
+	 */
+	public TiledDiagramCanvas(ParsedSVG svg, Image placeholder) {
+		super(svg);
+		this.placeholder = placeholder;
+	}
+
+	@Override
+	public void setScale(double scale) {
+		discardTiles();
+		super.setScale(scale);
+	}
+
+	@Override
+	public void removeNotify() {
+		discardTiles();
+		super.removeNotify();
+	}
+
+	@Override
+	protected void paintComponent(Graphics g) {
+		Rectangle clip = g.getClipBounds();
+		if (clip == null) {
+			clip = new Rectangle(0, 0, getWidth(), getHeight());
+		}
+		Point origin = getDiagramOrigin();
+		Dimension size = getPreferredSize();
+		clip = clip.intersection(new Rectangle(origin, size));
+		if (clip.isEmpty()) {
+			return;
+		}
+		int firstColumn = Math.max(0, (clip.x - origin.x) / TILE_SIZE);
+		int lastColumn = Math.min((size.width - 1) / TILE_SIZE, (clip.x + clip.width - 1 - origin.x) / TILE_SIZE);
+		int firstRow = Math.max(0, (clip.y - origin.y) / TILE_SIZE);
+		int lastRow = Math.min((size.height - 1) / TILE_SIZE, (clip.y + clip.height - 1 - origin.y) / TILE_SIZE);
+		for (int row = firstRow; row <= lastRow; row++) {
+			for (int column = firstColumn; column <= lastColumn; column++) {
+				Point key = new Point(column, row);
+				Rectangle region = new Rectangle(column * TILE_SIZE, row * TILE_SIZE, Math.min(TILE_SIZE, size.width - column * TILE_SIZE), Math.min(TILE_SIZE, size.height - row * TILE_SIZE));
+				BufferedImage tile = tiles.get(key);
+				if (tile != null) {
+					g.drawImage(tile, origin.x + region.x, origin.y + region.y, null);
+				} else {
+					paintPlaceholder(g, origin, size, region);
+					requestTile(key, region);
+				}
+			}
+		}
+	}
+
+	private void paintPlaceholder(Graphics g, Point origin, Dimension size, Rectangle region) {
+		if (placeholder == null) {
+			return;
+		}
+		Graphics2D g2 = (Graphics2D) g.create();
+		try {
+			g2.clipRect(origin.x + region.x, origin.y + region.y, region.width, region.height);
+			g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			g2.drawImage(placeholder, origin.x, origin.y, size.width, size.height, null);
+		} finally {
+			g2.dispose();
+		}
+	}
+
+	private void requestTile(final Point key, final Rectangle region) {
+		if (!pending.add(key)) {
+			return;
+		}
+		final int requestGeneration = generation;
+		final double scale = getScale();
+		tileExecutor.execute(new Runnable() {
+			public void run() {
+				if (requestGeneration != generation) {
+					return; // the canvas was zoomed or discarded while the tile was queued
+				}
+				final BufferedImage tile;
+				try {
+					tile = getSVG().rasterize(scale, region);
+				} catch (RuntimeException e) {
+					LOGGER.error("Error rasterizing diagram tile", e);
+					SwingUtilities.invokeLater(new Runnable() {
+						public void run() {
+							if (requestGeneration == generation) {
+								pending.remove(key); // requested again the next time it is painted
+							}
+						}
+					});
+					return;
+				}
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						if (requestGeneration != generation) {
+							return;
+						}
+						pending.remove(key);
+						tiles.put(key, tile);
+						Point origin = getDiagramOrigin();
+						repaint(origin.x + region.x, origin.y + region.y, region.width, region.height);
+					}
+				});
+			}
+		});
+	}
+
+	private void discardTiles() {
+		generation++;
+		tiles.clear();
+		pending.clear();
+	}
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.ui;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.lang.ref.SoftReference;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.batik.transcoder.TranscoderException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alternatecomputing.jschnizzle.model.Diagram;
+import com.alternatecomputing.jschnizzle.renderer.util.ParsedSVG;
+
+/**
+ * Images of a diagram at each step of the scale slider, rasterized in the background so that moving the slider only
+ * swaps images. Steps are built nearest to the natural size first, and steps that would take the pyramid over
+ * <code>jschnizzle.ui.zoomPyramidBytes</code> (64 MB by default) are skipped. Steps are held softly, so the garbage
+ * collector may reclaim them; the slider then rasterizes the step itself. Diagrams whose SVG is not at hand, such as
+ * raster renders, are scaled from the rendered image rather than fetching their SVG.
+ */
+public class ZoomPyramid {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ZoomPyramid.class);
+	private static final long MAX_BYTES = Long.getLong("jschnizzle.ui.zoomPyramidBytes", 64L * 1024 * 1024).longValue();
+	private static final ExecutorService pyramidExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "zoom-pyramid");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	private final Diagram diagram;
+	private final BufferedImage image;
+	private final int intervals;
+	private final SoftReference<BufferedImage>[] levels;
+	private volatile boolean cancelled;
+
+	/**
+	 * constructor
+	 *
+	 * @param diagram diagram to build the pyramid of
+	 * @param image rendered image of the diagram, shown at the middle step of the slider
+	 * @param intervals number of slider intervals; step <code>intervals / 2</code> is the natural size
+	 */
+	@SuppressWarnings("unchecked")
+	public ZoomPyramid(Diagram diagram, BufferedImage image, int intervals) {
+		this.diagram = diagram;
+		this.image = image;
+		this.intervals = intervals;
+		this.levels = new SoftReference[intervals + 1];
+	}
+
+	/**
+	 * start building the pyramid in the background
+	 */
+	public void start() {
+		pyramidExecutor.execute(new Runnable() {
+			public void run() {
+				build();
+			}
+		});
+	}
+
+	/**
+	 * stop building the pyramid, e.g. because another diagram is being displayed
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * return the rendered image the pyramid is built from
+	 *
+	 * @return rendered image
+	 */
+	public BufferedImage getImage() {
+		return image;
+	}
+
+	/**
+	 * return the image for the given slider step, if it has been built
+	 *
+	 * @param step slider value
+	 * @return scaled image, or null if it is not available (yet) or has been reclaimed
+	 */
+	public synchronized BufferedImage getLevel(int step) {
+		SoftReference<BufferedImage> level = step >= 0 && step < levels.length ? levels[step] : null;
+		return level == null ? null : level.get();
+	}
+
+	private void build() {
+		long budget = MAX_BYTES;
+		ParsedSVG svg = null;
+		try {
+			if (diagram.hasEncodedImage()) {
+				svg = ParsedSVG.forDiagram(diagram);
+			}
+		} catch (TranscoderException e) {
+			LOGGER.debug("Building zoom pyramid from the rendered image; its SVG could not be parsed.", e);
+		}
+		int middle = intervals / 2;
+		for (int distance = 1; distance <= middle; distance++) {
+			for (int step : new int[] { middle - distance, middle + distance }) {
+				if (cancelled) {
+					return;
+				}
+				// the same arithmetic as the slider uses to size the scaled diagram
+				int width = image.getWidth() * step / intervals * 2;
+				int height = image.getHeight() * step / intervals * 2;
+				long bytes = 4L * width * height;
+				if (step < 0 || step > intervals || width <= 0 || height <= 0 || bytes > budget) {
+					continue;
+				}
+				BufferedImage level = svg != null ? svg.rasterize(width, height, BufferedImage.TYPE_INT_ARGB, null) : scale(width, height);
+				budget -= bytes;
+				synchronized (this) {
+					levels[step] = new SoftReference<BufferedImage>(level);
+				}
+			}
+		}
+	}
+
+	private BufferedImage scale(int width, int height) {
+		BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = scaled.createGraphics();
+		try {
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+			g.drawImage(image, 0, 0, width, height, null);
+		} finally {
+			g.dispose();
+		}
+		return scaled;
+	}
+
+}
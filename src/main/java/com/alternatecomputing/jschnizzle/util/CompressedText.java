@@ -0,0 +1,129 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Immutable text held as deflated UTF-8 bytes, for large and repetitive text such as SVG that is kept around much
+ * longer than it is read
+ */
+public final class CompressedText implements Serializable {
+	private static final long serialVersionUID = 2871143620467739011L;
+	private static final String CHARSET = "UTF-8";
+	private final byte[] compressed;
+	private final int rawSize;
+
+	/**
+	 * constructor
+	 *
+	 * @param text text to compress
+	 */
+	public CompressedText(String text) {
+		this(utf8(text));
+	}
+
+	/**
+	 * constructor, compressing text that is already UTF-8 encoded without decoding it
+	 *
+	 * @param raw buffer holding the UTF-8 encoded text
+	 * @param offset offset of the text in the buffer
+	 * @param length length of the text in bytes
+	 */
+	public CompressedText(byte[] raw, int offset, int length) {
+		Deflater deflater = new Deflater();
+		try {
+			deflater.setInput(raw, offset, length);
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, length / 4));
+			byte[] buffer = new byte[8192];
+			while (!deflater.finished()) {
+				out.write(buffer, 0, deflater.deflate(buffer));
+			}
+			this.compressed = out.toByteArray();
+			this.rawSize = length;
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private CompressedText(byte[] raw) {
+		this(raw, 0, raw.length);
+	}
+
+	private static byte[] utf8(String text) {
+		try {
+			return text.getBytes(CHARSET);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * return the size of the text in bytes, encoded as UTF-8
+	 *
+	 * @return raw size
+	 */
+	public int getRawSize() {
+		return rawSize;
+	}
+
+	/**
+	 * return the size of the compressed text in bytes
+	 *
+	 * @return compressed size
+	 */
+	public int getCompressedSize() {
+		return compressed.length;
+	}
+
+	/**
+	 * decompress the text
+	 *
+	 * @return text
+	 * @throws IllegalStateException if the compressed text is truncated or corrupt
+	 */
+	@Override
+	public String toString() {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed);
+			byte[] raw = new byte[rawSize];
+			int length = 0;
+			while (length < rawSize) {
+				int inflated = inflater.inflate(raw, length, rawSize - length);
+				if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+					// no more text is coming
+					throw new IllegalStateException("compressed text ends after " + length + " of " + rawSize + " bytes");
+				}
+				length += inflated;
+			}
+			return new String(raw, 0, length, CHARSET);
+		} catch (DataFormatException e) {
+			throw new IllegalStateException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+}
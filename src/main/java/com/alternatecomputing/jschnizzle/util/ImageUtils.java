@@ -19,12 +19,19 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
 
 import javax.imageio.ImageIO;
 
+import org.apache.batik.transcoder.TranscoderException;
+import org.apache.batik.transcoder.TranscoderInput;
+
 import sun.misc.BASE64Decoder;
 import sun.misc.BASE64Encoder;
 
+import com.alternatecomputing.jschnizzle.renderer.util.BufferedImageTranscoder;
+
 /**
  * Image utilities
  */
@@ -59,4 +66,33 @@ public class ImageUtils {
 		return ImageIO.read(input);
 	}
 
+	/**
+	 * rasterize the given SVG content at its natural size
+	 *
+	 * @param svg SVG content
+	 * @return image
+	 * @throws TranscoderException if the SVG content cannot be rasterized
+	 */
+	public static BufferedImage transcodeSVG(String svg) throws TranscoderException {
+		try {
+			return transcodeSVG(new ByteArrayInputStream(svg.getBytes("UTF-8")));
+		} catch (UnsupportedEncodingException e) {
+			throw new TranscoderException(e);
+		}
+	}
+
+	/**
+	 * rasterize SVG content read from the given stream at its natural size
+	 *
+	 * @param svg stream of SVG content
+	 * @return image
+	 * @throws TranscoderException if the SVG content cannot be rasterized
+	 */
+	public static BufferedImage transcodeSVG(InputStream svg) throws TranscoderException {
+		TranscoderInput input = new TranscoderInput(svg);
+		BufferedImageTranscoder imageTranscoder = new BufferedImageTranscoder();
+		imageTranscoder.transcode(input, null);
+		return imageTranscoder.getBufferedImage();
+	}
+
 }
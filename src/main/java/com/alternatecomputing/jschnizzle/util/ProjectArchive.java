@@ -0,0 +1,491 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.util;
+
+import java.beans.XMLDecoder;
+import java.beans.XMLEncoder;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alternatecomputing.jschnizzle.model.Diagram;
+import com.alternatecomputing.jschnizzle.model.DiagramType;
+import com.alternatecomputing.jschnizzle.model.ImagePayload;
+
+/**
+ * Reads and writes projects as a zip container: a small index of diagram metadata, and separate entries for the
+ * script and the rendered image of each diagram. Rendered images are only read from the container when they are
+ * first needed. They are stored as deflated UTF-8 text in uncompressed zip entries, so that the images of diagrams
+ * that have not changed can be copied over byte for byte when the project is saved again.
+ */
+public class ProjectArchive {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ProjectArchive.class);
+	private static final String CHARSET = "UTF-8";
+	private static final String INDEX_ENTRY = "index.xml";
+	private static final int[] ZIP_SIGNATURE = { 'P', 'K', 3, 4 };
+	// where the rendered image of each diagram was last read from or written to
+	private static final Map<Diagram, EntrySource> locations = Collections.synchronizedMap(new WeakHashMap<Diagram, EntrySource>());
+
+	private ProjectArchive() {
+	}
+
+	/**
+	 * return whether the given file is a project container, as opposed to a project saved as a single XML document
+	 *
+	 * @param file project file
+	 * @return true if the file starts with the zip signature
+	 * @throws IOException if the file cannot be read
+	 */
+	public static boolean isArchive(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			for (int b : ZIP_SIGNATURE) {
+				if (in.read() != b) {
+					return false;
+				}
+			}
+			return true;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * read the diagrams of the given project container. Scripts are read right away; the rendered images are read
+	 * from the container when they are first needed.
+	 *
+	 * @param file project container
+	 * @return diagrams in the order they were saved
+	 * @throws IOException if the container cannot be read
+	 */
+	public static List<Diagram> read(File file) throws IOException {
+		ZipFile zipFile = new ZipFile(file);
+		try {
+			ZipEntry indexEntry = zipFile.getEntry(INDEX_ENTRY);
+			if (indexEntry == null) {
+				throw new IOException("Project index missing from " + file.getAbsolutePath());
+			}
+			XMLDecoder decoder = new XMLDecoder(zipFile.getInputStream(indexEntry));
+			@SuppressWarnings("unchecked")
+			List<Diagram> diagrams = (List<Diagram>) decoder.readObject();
+			decoder.close();
+			for (int i = 0; i < diagrams.size(); i++) {
+				Diagram diagram = diagrams.get(i);
+				ZipEntry scriptEntry = zipFile.getEntry(scriptEntryName(i));
+				if (scriptEntry != null) {
+					diagram.setScript(readString(zipFile.getInputStream(scriptEntry), scriptEntry.getSize()));
+				}
+				ZipEntry renderEntry = zipFile.getEntry(renderEntryName(i));
+				if (renderEntry != null) {
+					EntrySource source = new EntrySource(file, renderEntry);
+					diagram.nonBeanEncodedImageSource(source);
+					locations.put(diagram, source);
+				}
+			}
+			return diagrams;
+		} finally {
+			zipFile.close();
+		}
+	}
+
+	/**
+	 * take a copy of what is saved of the given diagrams, to be written by {@link #write(File, Snapshot)} while the
+	 * diagrams go on being edited. It must be taken on the thread the diagrams are edited on.
+	 *
+	 * @param diagrams diagrams to save
+	 * @param changed diagrams that have changed since the project was last opened or saved
+	 * @return snapshot of the diagrams
+	 */
+	public static Snapshot snapshot(List<Diagram> diagrams, Set<Diagram> changed) {
+		return new Snapshot(diagrams, changed);
+	}
+
+	/**
+	 * write the given diagrams to a project container, see {@link #write(File, Snapshot)}
+	 *
+	 * @param file project container
+	 * @param diagrams diagrams to save
+	 * @param changed diagrams that have changed since the project was last opened or saved
+	 * @throws IOException if the container cannot be written
+	 */
+	public static void write(File file, List<Diagram> diagrams, Set<Diagram> changed) throws IOException {
+		write(file, snapshot(diagrams, changed));
+	}
+
+	/**
+	 * write the given snapshot of diagrams to a project container. The container is written to a temporary file next
+	 * to the given file, which it then replaces. Only the rendered images of changed diagrams are encoded again; the
+	 * others are copied over from the container they were last read from or written to. A diagram whose rendered image
+	 * can no longer be found there is saved without it, and is left to be rendered again.
+	 *
+	 * @param file project container
+	 * @param snapshot diagrams to save
+	 * @throws IOException if the container cannot be written
+	 */
+	public static void write(File file, Snapshot snapshot) throws IOException {
+		int count = snapshot.diagrams.size();
+		File temp = File.createTempFile("jschnizzle", ".tmp", file.getAbsoluteFile().getParentFile());
+		boolean replacing = false;
+		boolean written = false;
+		ZipEntry[] renders = new ZipEntry[count];
+		Map<File, ZipFile> sourceFiles = new HashMap<File, ZipFile>();
+		try {
+			ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			try {
+				out.putNextEntry(new ZipEntry(INDEX_ENTRY));
+				XMLEncoder encoder = new XMLEncoder(new UnclosableOutputStream(out));
+				encoder.setPersistenceDelegate(DiagramType.class, new EnumPersistenceDelegate());
+				encoder.writeObject(new ArrayList<Diagram>(snapshot.index));
+				encoder.close();
+				out.closeEntry();
+
+				for (int i = 0; i < count; i++) {
+					String script = snapshot.scripts.get(i);
+					if (script != null) {
+						out.putNextEntry(new ZipEntry(scriptEntryName(i)));
+						out.write(script.getBytes(CHARSET));
+						out.closeEntry();
+					}
+					renders[i] = writeRender(out, i, snapshot, sourceFiles);
+				}
+			} finally {
+				out.close();
+				for (ZipFile zipFile : sourceFiles.values()) {
+					zipFile.close();
+				}
+			}
+			replacing = true;
+			replace(temp, file);
+			written = true;
+		} finally {
+			// once the original is gone, the temporary file is the only copy of the project left
+			if (!written && !(replacing && !file.exists())) {
+				temp.delete();
+			}
+		}
+
+		// the rendered images now live at their new position in the new file
+		for (int i = 0; i < count; i++) {
+			Diagram diagram = snapshot.diagrams.get(i);
+			if (renders[i] != null) {
+				EntrySource location = new EntrySource(file, renders[i]);
+				locations.put(diagram, location);
+				if (snapshot.sources.get(i) instanceof EntrySource) {
+					diagram.nonBeanMoveEncodedImageSource(snapshot.sources.get(i), location);
+				}
+			} else {
+				locations.remove(diagram);
+			}
+		}
+	}
+
+	private static ZipEntry writeRender(ZipOutputStream out, int i, Snapshot snapshot, Map<File, ZipFile> sourceFiles) throws IOException {
+		Diagram diagram = snapshot.diagrams.get(i);
+		Callable<String> source = snapshot.sources.get(i);
+		EntrySource location = snapshot.locations.get(i);
+		if (source instanceof EntrySource) {
+			// not read since the project was opened
+			if (((EntrySource) source).isCurrent(sourceFiles)) {
+				return ((EntrySource) source).copyTo(out, renderEntryName(i), sourceFiles);
+			}
+			LOGGER.warn("Image of diagram '" + snapshot.index.get(i).getName() + "' is no longer in the project file; render it again.");
+			if (diagram.nonBeanMoveEncodedImageSource(source, null)) {
+				diagram.nonBeanRefresh(true);
+			}
+			return null;
+		} else if (!snapshot.changed[i] && location != null && location.isCurrent(sourceFiles)) {
+			return location.copyTo(out, renderEntryName(i), sourceFiles);
+		}
+		String encodedImage = null;
+		if (snapshot.payloads.get(i) != null) {
+			encodedImage = snapshot.payloads.get(i).getText();
+		} else if (source != null) {
+			// a raster render whose SVG has not been fetched yet
+			try {
+				encodedImage = source.call();
+			} catch (Exception e) {
+				LOGGER.error("Error fetching image of diagram '" + snapshot.index.get(i).getName() + "'; it is saved without it.", e);
+			}
+		}
+		return encodedImage == null ? null : writeRender(out, renderEntryName(i), encodedImage);
+	}
+
+	/**
+	 * move the temporary file over the given file, atomically where the file system allows it
+	 *
+	 * @throws IOException if the file could not be replaced
+	 */
+	private static void replace(File temp, File file) throws IOException {
+		try {
+			try {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			if (!file.exists()) {
+				throw new IOException("Unable to move " + temp.getAbsolutePath() + " to " + file.getAbsolutePath() + "; the project has been kept in the former.", e);
+			}
+			throw e;
+		}
+	}
+
+	private static Diagram metadataOf(Diagram diagram) {
+		Diagram metadata = new Diagram();
+		metadata.setName(diagram.getName());
+		metadata.setNote(diagram.getNote());
+		metadata.setType(diagram.getType());
+		metadata.setStyle(diagram.getStyle());
+		return metadata;
+	}
+
+	private static String scriptEntryName(int index) {
+		return "diagrams/" + index + "/script.txt";
+	}
+
+	private static String renderEntryName(int index) {
+		return "diagrams/" + index + "/render";
+	}
+
+	private static ZipEntry writeRender(ZipOutputStream out, String entryName, String encodedImage) throws IOException {
+		ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+		DeflaterOutputStream deflater = new DeflaterOutputStream(deflated);
+		deflater.write(encodedImage.getBytes(CHARSET));
+		deflater.close();
+		byte[] bytes = deflated.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+		ZipEntry entry = new ZipEntry(entryName);
+		entry.setMethod(ZipEntry.STORED);
+		entry.setSize(bytes.length);
+		entry.setCompressedSize(bytes.length);
+		entry.setCrc(crc.getValue());
+		out.putNextEntry(entry);
+		out.write(bytes);
+		out.closeEntry();
+		return entry;
+	}
+
+	private static String readRender(ZipFile zipFile, ZipEntry entry) throws IOException {
+		if (entry.getMethod() == ZipEntry.STORED) {
+			return readString(new InflaterInputStream(zipFile.getInputStream(entry)), entry.getSize() * 4);
+		}
+		// rendered images were briefly saved as plain text in compressed entries
+		return readString(zipFile.getInputStream(entry), entry.getSize());
+	}
+
+	private static String readString(InputStream in, long sizeHint) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(sizeHint > 0 && sizeHint < Integer.MAX_VALUE ? (int) sizeHint : 8192);
+		copy(in, out);
+		return out.toString(CHARSET);
+	}
+
+	private static void copy(InputStream in, OutputStream out) throws IOException {
+		try {
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Copy of what is saved of each diagram: its metadata, its script, and its encoded image or where to find it. The
+	 * diagrams themselves are only kept to record where their images have been written.
+	 */
+	public static final class Snapshot {
+		private final List<Diagram> diagrams;
+		private final List<Diagram> index;
+		private final List<String> scripts;
+		private final List<ImagePayload> payloads;
+		private final List<Callable<String>> sources;
+		private final List<EntrySource> locations;
+		private final boolean[] changed;
+
+		private Snapshot(List<Diagram> diagrams, Set<Diagram> changed) {
+			int count = diagrams.size();
+			List<Diagram> index = new ArrayList<Diagram>(count);
+			List<String> scripts = new ArrayList<String>(count);
+			List<ImagePayload> payloads = new ArrayList<ImagePayload>(count);
+			List<Callable<String>> sources = new ArrayList<Callable<String>>(count);
+			List<EntrySource> locations = new ArrayList<EntrySource>(count);
+			this.changed = new boolean[count];
+			for (int i = 0; i < count; i++) {
+				Diagram diagram = diagrams.get(i);
+				index.add(metadataOf(diagram));
+				scripts.add(diagram.getScript());
+				// the payload is at hand whenever the image is not deferred, so this does not fetch
+				Callable<String> source = diagram.nonBeanEncodedImageSource();
+				payloads.add(source == null ? diagram.nonBeanPayload() : null);
+				sources.add(source);
+				locations.add(ProjectArchive.locations.get(diagram));
+				this.changed[i] = changed.contains(diagram);
+			}
+			this.diagrams = Collections.unmodifiableList(new ArrayList<Diagram>(diagrams));
+			this.index = Collections.unmodifiableList(index);
+			this.scripts = Collections.unmodifiableList(scripts);
+			this.payloads = Collections.unmodifiableList(payloads);
+			this.sources = Collections.unmodifiableList(sources);
+			this.locations = Collections.unmodifiableList(locations);
+		}
+	}
+
+	/**
+	 * Reads the rendered image of a diagram from the project container it was last read from or written to. Entries
+	 * are numbered by position, so the entry is told apart from whatever a later save put under the same name by its
+	 * CRC and size.
+	 */
+	private static class EntrySource implements Callable<String> {
+		private final File file;
+		private final String entryName;
+		private final long crc;
+		private final long size;
+
+		EntrySource(File file, ZipEntry entry) {
+			this.file = file;
+			this.entryName = entry.getName();
+			this.crc = entry.getCrc();
+			this.size = entry.getSize();
+		}
+
+		public String call() throws IOException {
+			ZipFile zipFile = new ZipFile(file);
+			try {
+				return readRender(zipFile, getEntry(zipFile));
+			} finally {
+				zipFile.close();
+			}
+		}
+
+		/**
+		 * return whether the container still holds the entry as it was read or written
+		 *
+		 * @param zipFiles containers already opened for copying, by file
+		 * @return true if the entry is unchanged
+		 */
+		boolean isCurrent(Map<File, ZipFile> zipFiles) {
+			try {
+				getEntry(open(zipFiles));
+				return true;
+			} catch (IOException e) {
+				return false;
+			}
+		}
+
+		/**
+		 * copy the entry to the given container, byte for byte unless it was saved as plain text
+		 *
+		 * @param out container being written
+		 * @param newEntryName name of the entry in the container being written
+		 * @param zipFiles containers already opened for copying, by file
+		 * @return entry written
+		 * @throws IOException if the entry cannot be copied
+		 */
+		ZipEntry copyTo(ZipOutputStream out, String newEntryName, Map<File, ZipFile> zipFiles) throws IOException {
+			ZipFile zipFile = open(zipFiles);
+			ZipEntry entry = getEntry(zipFile);
+			if (entry.getMethod() != ZipEntry.STORED) {
+				return writeRender(out, newEntryName, readRender(zipFile, entry));
+			}
+			ZipEntry copied = new ZipEntry(newEntryName);
+			copied.setMethod(ZipEntry.STORED);
+			copied.setSize(entry.getSize());
+			copied.setCompressedSize(entry.getSize());
+			copied.setCrc(entry.getCrc());
+			out.putNextEntry(copied);
+			copy(zipFile.getInputStream(entry), out);
+			out.closeEntry();
+			return copied;
+		}
+
+		private ZipFile open(Map<File, ZipFile> zipFiles) throws IOException {
+			ZipFile zipFile = zipFiles.get(file);
+			if (zipFile == null) {
+				zipFile = new ZipFile(file);
+				zipFiles.put(file, zipFile);
+			}
+			return zipFile;
+		}
+
+		private ZipEntry getEntry(ZipFile zipFile) throws IOException {
+			ZipEntry entry = zipFile.getEntry(entryName);
+			if (entry == null || entry.getCrc() != crc || entry.getSize() != size) {
+				throw new IOException("Entry " + entryName + " missing from " + file.getAbsolutePath() + " or changed since it was read.");
+			}
+			return entry;
+		}
+	}
+
+	/**
+	 * Keeps the XMLEncoder from closing the zip stream along with the index entry
+	 */
+	private static class UnclosableOutputStream extends OutputStream {
+		private final OutputStream out;
+
+		UnclosableOutputStream(OutputStream out) {
+			this.out = out;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			flush();
+		}
+	}
+
+}
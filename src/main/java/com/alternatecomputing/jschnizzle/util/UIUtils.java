@@ -20,6 +20,8 @@ import java.awt.Component;
 import java.awt.Point;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.awt.image.BufferedImage;
 
 import javax.swing.BorderFactory;
@@ -32,6 +34,8 @@ import javax.swing.JScrollPane;
 import javax.swing.JSplitPane;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.plaf.basic.BasicSplitPaneUI;
 
 import org.jdesktop.swingx.JXHeader;
@@ -45,8 +49,11 @@ import com.alternatecomputing.jschnizzle.event.EventType;
 import com.alternatecomputing.jschnizzle.event.JSEvent;
 import com.alternatecomputing.jschnizzle.model.Diagram;
 import com.alternatecomputing.jschnizzle.model.DiagramStyle;
+import com.alternatecomputing.jschnizzle.renderer.RenderCallback;
 import com.alternatecomputing.jschnizzle.renderer.Renderer;
 import com.alternatecomputing.jschnizzle.renderer.RendererFactory;
+import com.alternatecomputing.jschnizzle.renderer.ScriptCanonicalizer;
+import com.alternatecomputing.jschnizzle.ui.DiagramPreviewPanel;
 import com.jgoodies.forms.builder.DefaultFormBuilder;
 import com.jgoodies.forms.factories.ButtonBarFactory;
 import com.jgoodies.forms.layout.CellConstraints;
@@ -83,11 +90,11 @@ public class UIUtils {
 	public static JPanel createDiagramPanel(JXHeader header, final Diagram diagram, final JDialog dialog, final boolean isNew) {
 		final String originalScript = diagram.getScript();
 		final DiagramStyle originalStyle = diagram.getStyle();
-		FormLayout layout = new FormLayout("right:max(40dlu;pref), 4dlu, fill:min:grow", "pref, 4dlu, pref, 4dlu, pref, 4dlu, pref, 4dlu, pref, fill:pref:grow, 4dlu, pref");
+		FormLayout layout = new FormLayout("right:max(40dlu;pref), 4dlu, fill:min:grow, 4dlu, fill:min:grow", "pref, 4dlu, pref, 4dlu, pref, 4dlu, pref, 4dlu, pref, fill:pref:grow, 4dlu, pref");
 		DefaultFormBuilder builder = new DefaultFormBuilder(layout);
 		builder.setDefaultDialogBorder();
 		CellConstraints cc = new CellConstraints();
-		builder.add(header, cc.xywh(1, 1, 3, 1));
+		builder.add(header, cc.xywh(1, 1, 5, 1));
 		builder.add(new JLabel("Name:"), cc.xy(1, 3));
 		final JTextField nameTextField = new JTextField(diagram.getName() == null ? "" : diagram.getName());
 		builder.add(nameTextField, cc.xy(3, 3));
@@ -110,6 +117,33 @@ public class UIUtils {
 		final JTextArea scriptTextArea = new JTextArea(diagram.getScript() == null ? "" : diagram.getScript());
 		builder.add(new JScrollPane(scriptTextArea), cc.xywh(3, 9, 1, 2));
 
+		final DiagramPreviewPanel previewPanel = new DiagramPreviewPanel(diagram);
+		builder.add(previewPanel, cc.xywh(5, 3, 1, 8));
+		scriptTextArea.getDocument().addDocumentListener(new DocumentListener() {
+			public void insertUpdate(DocumentEvent e) {
+				previewPanel.scheduleRender((DiagramStyle) styleComboBox.getSelectedItem(), scriptTextArea.getText());
+			}
+
+			public void removeUpdate(DocumentEvent e) {
+				previewPanel.scheduleRender((DiagramStyle) styleComboBox.getSelectedItem(), scriptTextArea.getText());
+			}
+
+			public void changedUpdate(DocumentEvent e) {
+				previewPanel.scheduleRender((DiagramStyle) styleComboBox.getSelectedItem(), scriptTextArea.getText());
+			}
+		});
+		styleComboBox.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				previewPanel.scheduleRender((DiagramStyle) styleComboBox.getSelectedItem(), scriptTextArea.getText());
+			}
+		});
+		dialog.addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowClosed(WindowEvent e) {
+				previewPanel.dispose();
+			}
+		});
+
 		JButton okButton = new JButton("OK");
 		okButton.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
@@ -117,39 +151,61 @@ public class UIUtils {
 				diagram.setNote(noteTextField.getText());
 				diagram.setStyle((DiagramStyle) styleComboBox.getSelectedItem());
 				diagram.setScript(scriptTextArea.getText());
+				Diagram preview = previewPanel.getRenderedPreview(diagram.getStyle(), diagram.getScript());
 				Dispatcher.dispatchEvent(new JSEvent(EventType.ProgressStarted, null, null));
-				Thread t = new Thread() {
-					public void run() {
-						try {
-							if (needsRendering()) {
-								LOGGER.info("Rendering diagram '" + diagram.getName() + "'...");
-								Renderer renderer = RendererFactory.getRendererForDiagram(diagram);
-								BufferedImage image = renderer.render(diagram);
-								diagram.nonBeanImage(image);
-								LOGGER.info("Diagram '" + diagram.getName() + "' successfully rendered.");
-							}
-							if (isNew) {
-								LOGGER.info("Diagram '" + diagram.getName() + "' created.");
-								Dispatcher.dispatchEvent(new JSEvent(EventType.DiagramAdded, this, diagram));
-								Dispatcher.dispatchEvent(new JSEvent(EventType.SelectDiagram, this, diagram));
-							} else {
-								LOGGER.info("Diagram '" + diagram.getName() + "' modified.");
-								Dispatcher.dispatchEvent(new JSEvent(EventType.DiagramModified, this, diagram));
+				try {
+					if (needsRendering() && preview != null) {
+						// reuse the live preview rather than rendering the same script again
+						diagram.nonBeanImage(preview.nonBeanImage());
+						diagram.copyEncodedImage(preview);
+						LOGGER.info("Diagram '" + diagram.getName() + "' successfully rendered.");
+						diagramUpdated();
+						Dispatcher.dispatchEvent(new JSEvent(EventType.ProgressCompleted, null, null));
+					} else if (needsRendering()) {
+						LOGGER.info("Rendering diagram '" + diagram.getName() + "'...");
+						Renderer renderer = RendererFactory.getRendererForDiagram(diagram);
+						renderer.renderAsync(diagram, new RenderCallback() {
+							public void renderCompleted(Diagram diagram, BufferedImage image) {
+								try {
+									diagram.nonBeanImage(image);
+									LOGGER.info("Diagram '" + diagram.getName() + "' successfully rendered.");
+									diagramUpdated();
+								} finally {
+									Dispatcher.dispatchEvent(new JSEvent(EventType.ProgressCompleted, null, null));
+								}
 							}
-						} catch (Exception e) {
-							LOGGER.error("Error processing user action.", e);
-						} finally {
-							Dispatcher.dispatchEvent(new JSEvent(EventType.ProgressCompleted, null, null));
-						}
-					}
 
-					private boolean needsRendering() {
-						return (!diagram.getScript().equals(originalScript)) || (!diagram.getStyle().equals(originalStyle));
+							public void renderFailed(Diagram diagram, Throwable cause) {
+								LOGGER.error("Error processing user action.", cause);
+								Dispatcher.dispatchEvent(new JSEvent(EventType.ProgressCompleted, null, null));
+							}
+						});
+					} else {
+						diagramUpdated();
+						Dispatcher.dispatchEvent(new JSEvent(EventType.ProgressCompleted, null, null));
 					}
-				};
-				t.start();
+				} catch (Exception ex) {
+					LOGGER.error("Error processing user action.", ex);
+					Dispatcher.dispatchEvent(new JSEvent(EventType.ProgressCompleted, null, null));
+				}
 				dialog.dispose();
 			}
+
+			private boolean needsRendering() {
+				// edits that only touch whitespace or comments leave the rendered image unchanged
+				return (!ScriptCanonicalizer.isEquivalent(diagram.getType(), diagram.getScript(), originalScript)) || (!diagram.getStyle().equals(originalStyle));
+			}
+
+			private void diagramUpdated() {
+				if (isNew) {
+					LOGGER.info("Diagram '" + diagram.getName() + "' created.");
+					Dispatcher.dispatchEvent(new JSEvent(EventType.DiagramAdded, this, diagram));
+					Dispatcher.dispatchEvent(new JSEvent(EventType.SelectDiagram, this, diagram));
+				} else {
+					LOGGER.info("Diagram '" + diagram.getName() + "' modified.");
+					Dispatcher.dispatchEvent(new JSEvent(EventType.DiagramModified, this, diagram));
+				}
+			}
 		});
 		JButton cancelButton = new JButton("Cancel");
 		cancelButton.addActionListener(new ActionListener() {
@@ -157,7 +213,7 @@ public class UIUtils {
 				dialog.dispose();
 			}
 		});
-		builder.add(ButtonBarFactory.buildOKCancelBar(okButton, cancelButton), cc.xy(3, 12));
+		builder.add(ButtonBarFactory.buildOKCancelBar(okButton, cancelButton), cc.xywh(3, 12, 3, 1));
 		return builder.getPanel();
 	}
 
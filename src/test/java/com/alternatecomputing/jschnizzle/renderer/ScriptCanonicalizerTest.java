@@ -0,0 +1,49 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer;
+
+import junit.framework.TestCase;
+
+import com.alternatecomputing.jschnizzle.model.DiagramType;
+
+/**
+ * Tests for the script canonicalizers
+ */
+public class ScriptCanonicalizerTest extends TestCase {
+
+	public void testYUMLIgnoresCommentsAndLineBreaks() {
+		assertTrue(ScriptCanonicalizer.isEquivalent(DiagramType.Class, "[A]->[B]\n[B]->[C]", "# classes\n[A]->[B]\r\n\n[B]->[C]\n"));
+		assertFalse(ScriptCanonicalizer.isEquivalent(DiagramType.Class, "[A]->[B]", "[A]->[C]"));
+	}
+
+	public void testSequenceIgnoresIndentationBlankLinesAndComments() {
+		assertTrue(ScriptCanonicalizer.isEquivalent(DiagramType.Sequence, "A->B: hi\nB->A: ok", "  A->B: hi   \n\n# reply\n\tB->A: ok\n"));
+		assertFalse(ScriptCanonicalizer.isEquivalent(DiagramType.Sequence, "A->B: hi", "A->B: hello"));
+	}
+
+	public void testSequenceKeepsBlankLinesInNotes() {
+		String note = "note over A\nfirst\n\nsecond\nend note";
+		assertFalse(ScriptCanonicalizer.isEquivalent(DiagramType.Sequence, note, note.replace("\n\n", "\n")));
+		// a single-line note does not start a multi-line block
+		assertTrue(ScriptCanonicalizer.isEquivalent(DiagramType.Sequence, "note over A: hi\n\nA->B", "note over A: hi\nA->B"));
+	}
+
+	public void testNullScripts() {
+		assertTrue(ScriptCanonicalizer.isEquivalent(DiagramType.Class, null, null));
+		assertFalse(ScriptCanonicalizer.isEquivalent(DiagramType.Class, null, "[A]"));
+	}
+
+}
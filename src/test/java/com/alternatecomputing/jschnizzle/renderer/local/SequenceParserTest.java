@@ -0,0 +1,102 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer.local;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.alternatecomputing.jschnizzle.renderer.RendererException;
+import com.alternatecomputing.jschnizzle.renderer.local.SequenceDiagram.Event;
+import com.alternatecomputing.jschnizzle.renderer.local.SequenceDiagram.Kind;
+import com.alternatecomputing.jschnizzle.renderer.local.SequenceDiagram.Placement;
+
+/**
+ * Tests for the websequencediagrams parser and the SVG it is drawn into
+ */
+public class SequenceParserTest extends TestCase {
+
+	public void testParticipantsAndMessages() {
+		SequenceDiagram diagram = SequenceParser.parse("title Login\nparticipant \"Web Server\" as W\nactor User\nUser->W: login\nW-->>-User: ok");
+		assertEquals("Login", diagram.title);
+		assertEquals(2, diagram.getParticipants().size());
+		assertEquals("Web Server", diagram.getParticipant("W").label);
+		assertTrue(diagram.getParticipant("User").actor);
+		List<Event> events = diagram.getEvents();
+		assertEquals(2, events.size());
+		Event reply = events.get(1);
+		assertEquals(Kind.Message, reply.kind);
+		assertTrue(reply.dashed);
+		assertTrue(reply.open);
+		assertTrue(reply.deactivateSource);
+		assertEquals("ok", reply.text);
+	}
+
+	public void testMultiLineNote() {
+		SequenceDiagram diagram = SequenceParser.parse("A->B: hi\nnote over A,B\nfirst\nsecond\nend note");
+		Event note = diagram.getEvents().get(1);
+		assertEquals(Kind.Note, note.kind);
+		assertEquals(Placement.Over, note.placement);
+		assertEquals("first\nsecond", note.text);
+	}
+
+	public void testGroups() {
+		SequenceDiagram diagram = SequenceParser.parse("alt ok\nA->B: yes\nelse\nA->B: no\nend\nloop");
+		List<Event> events = diagram.getEvents();
+		assertEquals(Kind.GroupStart, events.get(0).kind);
+		assertEquals("alt [ok]", events.get(0).text);
+		assertEquals(Kind.GroupElse, events.get(2).kind);
+		assertEquals(Kind.GroupEnd, events.get(4).kind);
+		// the unterminated loop is closed
+		assertEquals(Kind.GroupEnd, events.get(events.size() - 1).kind);
+	}
+
+	public void testUnmatchedEndIsRejected() {
+		try {
+			SequenceParser.parse("A->B: hi\nend");
+			fail("expected a RendererException");
+		} catch (RendererException e) {
+			assertTrue(e.getMessage().startsWith("line 2"));
+		}
+	}
+
+	public void testActivations() {
+		SequenceDiagram diagram = SequenceParser.parse("activate A\ndeactivate A\ndestroy A");
+		List<Event> events = diagram.getEvents();
+		assertEquals(Kind.Activate, events.get(0).kind);
+		assertEquals(Kind.Deactivate, events.get(1).kind);
+		assertEquals(Kind.Destroy, events.get(2).kind);
+		assertSame(diagram.getParticipant("A"), events.get(2).from);
+	}
+
+	public void testDestroyedLifelineEndsAtCross() {
+		String script = "A->+B: create\ndestroy B\nA->A: later";
+		String destroyed = new SequenceDiagramWriter("default", 0).write(SequenceParser.parse(script));
+		String kept = new SequenceDiagramWriter("default", 0).write(SequenceParser.parse(script.replace("destroy", "deactivate")));
+		// B's box is drawn only at the top, and the cross adds two lines
+		assertEquals(count(kept, "<rect") - 1, count(destroyed, "<rect"));
+		assertEquals(count(kept, "<line") + 2, count(destroyed, "<line"));
+	}
+
+	private static int count(String text, String token) {
+		int count = 0;
+		for (int i = text.indexOf(token); i >= 0; i = text.indexOf(token, i + 1)) {
+			count++;
+		}
+		return count;
+	}
+
+}
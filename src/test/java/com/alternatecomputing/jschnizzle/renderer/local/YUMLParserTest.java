@@ -0,0 +1,97 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer.local;
+
+import junit.framework.TestCase;
+
+import com.alternatecomputing.jschnizzle.model.DiagramType;
+import com.alternatecomputing.jschnizzle.renderer.local.Graph.Edge;
+import com.alternatecomputing.jschnizzle.renderer.local.Graph.Head;
+import com.alternatecomputing.jschnizzle.renderer.local.Graph.Node;
+import com.alternatecomputing.jschnizzle.renderer.local.Graph.Shape;
+
+/**
+ * Tests for the yUML parser and the SVG it is drawn into
+ */
+public class YUMLParserTest extends TestCase {
+
+	public void testPreprocessDropsCommentsAndJoinsLines() {
+		assertEquals("[A]->[B], [B]->[C]", YUMLParser.preprocess("# comment\n[A]->[B]\n# another\n[B]->[C]\n"));
+	}
+
+	public void testClassAssociation() {
+		Graph graph = YUMLParser.parse("[Customer]<>1-orders 0..*>[Order]", DiagramType.Class);
+		assertEquals(2, graph.getNodes().size());
+		assertEquals(1, graph.getEdges().size());
+		Edge edge = graph.getEdges().get(0);
+		assertEquals("Customer", edge.from.id);
+		assertEquals("Order", edge.to.id);
+		assertEquals(Head.OpenDiamond, edge.fromHead);
+		assertEquals(Head.Arrow, edge.toHead);
+		assertEquals("1", edge.fromLabel);
+		assertEquals("orders 0..*", edge.toLabel);
+	}
+
+	public void testClassCompartments() {
+		Graph graph = YUMLParser.parse("[User|name;email|login()]", DiagramType.Class);
+		Node node = graph.getNodes().get(0);
+		assertEquals(3, node.compartments.size());
+		assertEquals(2, node.compartments.get(1).size());
+		assertEquals("login()", node.compartments.get(2).get(0));
+	}
+
+	public void testActivityDecision() {
+		Graph graph = YUMLParser.parse("(start)-><d1>[ok]->(Ship)", DiagramType.Activity);
+		assertEquals(Shape.Start, graph.getNodes().get(0).shape);
+		assertEquals(Shape.Decision, graph.getNodes().get(1).shape);
+		assertEquals(Shape.Activity, graph.getNodes().get(2).shape);
+		assertEquals("ok", graph.getEdges().get(1).label);
+	}
+
+	public void testActivityConditionMayContainLessThan() {
+		Graph graph = YUMLParser.parse("(Check)-[x < 5]->(Retry)", DiagramType.Activity);
+		assertEquals(2, graph.getNodes().size());
+		for (Node node : graph.getNodes()) {
+			assertEquals(Shape.Activity, node.shape);
+		}
+		Edge edge = graph.getEdges().get(0);
+		assertEquals("x < 5", edge.label);
+		assertEquals(Head.Arrow, edge.toHead);
+	}
+
+	public void testBackgroundIsUsedAsFill() {
+		String svg = new YUMLDiagramWriter("nofunky;", 0).write(YUMLParser.parse("[A{bg:orange}]", DiagramType.Class), DiagramType.Class);
+		assertTrue(svg.contains("fill=\"orange\""));
+	}
+
+	public void testBackgroundCannotInjectMarkup() {
+		Graph graph = YUMLParser.parse("[A{bg:red\" onload=\"alert(1)}]->[B{bg:<script>}]", DiagramType.Class);
+		String svg = new YUMLDiagramWriter("nofunky;", 0).write(graph, DiagramType.Class);
+		assertFalse(svg.contains("onload"));
+		assertFalse(svg.contains("<script"));
+	}
+
+	public void testLongChainLaysOut() {
+		StringBuilder dsl = new StringBuilder("(a0)");
+		for (int i = 1; i < 5000; i++) {
+			dsl.append("->(a").append(i).append(')');
+		}
+		Graph graph = YUMLParser.parse(dsl.toString(), DiagramType.Activity);
+		new LayeredLayout(true).layout(graph);
+		assertEquals(4999, graph.getNodes().get(4999).layer);
+	}
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.renderer.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.methods.GetMethod;
+
+/**
+ * Tests for reading response bodies into a single buffer
+ */
+public class ResponseBodyTest extends TestCase {
+	private static final String SVG = "<svg xmlns=\"http://www.w3.org/2000/svg\"><text>caf\u00e9</text></svg>";
+
+	public void testExactContentLength() throws IOException {
+		byte[] bytes = SVG.getBytes("UTF-8");
+		ResponseBody body = ResponseBody.read(new Response(bytes, bytes.length, null));
+		assertEquals(bytes.length, body.getLength());
+		assertEquals(SVG, body.getText());
+		assertEquals(SVG, body.toCompressedText().toString());
+	}
+
+	public void testUnknownOrUnderstatedContentLength() throws IOException {
+		StringBuilder text = new StringBuilder();
+		while (text.length() < 20000) {
+			text.append(SVG);
+		}
+		byte[] bytes = text.toString().getBytes("UTF-8");
+		assertEquals(text.toString(), ResponseBody.read(new Response(bytes, -1, null)).getText());
+		assertEquals(text.toString(), ResponseBody.read(new Response(bytes, 10, null)).getText());
+	}
+
+	public void testDeclaredCharset() throws IOException {
+		byte[] bytes = SVG.getBytes("ISO-8859-1");
+		ResponseBody body = ResponseBody.read(new Response(bytes, bytes.length, "image/svg+xml; charset=ISO-8859-1"));
+		assertEquals(SVG, body.getText());
+		assertEquals(SVG, body.toCompressedText().toString());
+	}
+
+	public void testNoBody() throws IOException {
+		assertEquals(0, ResponseBody.read(new Response(null, 0, null)).getLength());
+	}
+
+	private static class Response extends GetMethod {
+		private final byte[] bytes;
+		private final long contentLength;
+		private final String contentType;
+
+		Response(byte[] bytes, long contentLength, String contentType) {
+			super("http://localhost/");
+			this.bytes = bytes;
+			this.contentLength = contentLength;
+			this.contentType = contentType;
+		}
+
+		@Override
+		public InputStream getResponseBodyAsStream() {
+			return bytes == null ? null : new ByteArrayInputStream(bytes);
+		}
+
+		@Override
+		public long getResponseContentLength() {
+			return contentLength;
+		}
+
+		@Override
+		public Header getResponseHeader(String name) {
+			return contentType == null ? null : new Header("Content-Type", contentType);
+		}
+	}
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for compressed text
+ */
+public class CompressedTextTest extends TestCase {
+
+	public void testRoundTrip() throws Exception {
+		String text = "<svg xmlns=\"http://www.w3.org/2000/svg\"><text>\u00abinclude\u00bb \u65e5\u672c</text></svg>";
+		CompressedText compressed = new CompressedText(text);
+		assertEquals(text, compressed.toString());
+		assertEquals(text.getBytes("UTF-8").length, compressed.getRawSize());
+	}
+
+	public void testEmpty() {
+		CompressedText compressed = new CompressedText("");
+		assertEquals("", compressed.toString());
+		assertEquals(0, compressed.getRawSize());
+	}
+
+	public void testRepetitiveTextIsSmaller() {
+		StringBuilder svg = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			svg.append("<rect x=\"").append(i).append("\" y=\"0\" width=\"10\" height=\"10\" fill=\"white\"/>\n");
+		}
+		CompressedText compressed = new CompressedText(svg.toString());
+		assertEquals(svg.length(), compressed.getRawSize());
+		assertTrue(compressed.getCompressedSize() * 5 < compressed.getRawSize());
+		assertEquals(svg.toString(), compressed.toString());
+	}
+
+	public void testSerialization() throws Exception {
+		CompressedText compressed = new CompressedText("[A]->[B]");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(compressed);
+		out.close();
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		assertEquals("[A]->[B]", in.readObject().toString());
+	}
+
+	public void testTruncatedTextFails() throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 500; i++) {
+			text.append("<line x1=\"").append(i).append("\"/>");
+		}
+		CompressedText compressed = new CompressedText(text.toString());
+		Field field = CompressedText.class.getDeclaredField("compressed");
+		field.setAccessible(true);
+		byte[] bytes = (byte[]) field.get(compressed);
+		field.set(compressed, Arrays.copyOf(bytes, bytes.length / 2));
+		try {
+			compressed.toString();
+			fail("truncated text must not be decompressed");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+}
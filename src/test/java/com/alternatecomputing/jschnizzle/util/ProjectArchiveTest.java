@@ -0,0 +1,194 @@
+/*
+ * Copyright 2012 Alternate Computing Solutions Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alternatecomputing.jschnizzle.util;
+
+import java.beans.XMLDecoder;
+import java.beans.XMLEncoder;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+
+import com.alternatecomputing.jschnizzle.model.Diagram;
+import com.alternatecomputing.jschnizzle.model.DiagramType;
+
+/**
+ * Tests for reading and writing project containers
+ */
+public class ProjectArchiveTest extends TestCase {
+	private static final String SVG = "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"10\" height=\"10\"><rect width=\"10\" height=\"10\"/></svg>";
+	private static final String OTHER_SVG = "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"20\" height=\"20\"/>";
+	private static final Set<Diagram> UNCHANGED = Collections.emptySet();
+	private File dir;
+
+	@Override
+	protected void setUp() throws Exception {
+		dir = File.createTempFile("archive", "test");
+		dir.delete();
+		dir.mkdir();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		for (File file : dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+	}
+
+	public void testXMLProjectMigratesToContainer() throws IOException {
+		File xml = new File(dir, "project.jsz");
+		XMLEncoder encoder = new XMLEncoder(new BufferedOutputStream(new FileOutputStream(xml)));
+		encoder.setPersistenceDelegate(DiagramType.class, new EnumPersistenceDelegate());
+		encoder.writeObject(new ArrayList<Diagram>(diagrams("first", "second")));
+		encoder.close();
+		assertFalse(ProjectArchive.isArchive(xml));
+
+		XMLDecoder decoder = new XMLDecoder(new BufferedInputStream(new FileInputStream(xml)));
+		@SuppressWarnings("unchecked")
+		List<Diagram> opened = (List<Diagram>) decoder.readObject();
+		decoder.close();
+		ProjectArchive.write(xml, opened, UNCHANGED);
+		assertTrue(ProjectArchive.isArchive(xml));
+
+		List<Diagram> read = ProjectArchive.read(xml);
+		assertEquals(2, read.size());
+		assertEquals("second", read.get(1).getName());
+		assertEquals(DiagramType.Class, read.get(1).getType());
+		assertEquals("[second]", read.get(1).getScript());
+		assertFalse(read.get(1).hasEncodedImage());
+		assertEquals(SVG, read.get(1).getEncodedImage());
+	}
+
+	public void testReadsPlainTextRenders() throws IOException {
+		// containers saved before renders were stored deflated keep them as plain text in compressed entries
+		File file = new File(dir, "plain.jsz");
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+		ByteArrayOutputStream index = new ByteArrayOutputStream();
+		XMLEncoder encoder = new XMLEncoder(index);
+		encoder.setPersistenceDelegate(DiagramType.class, new EnumPersistenceDelegate());
+		Diagram metadata = new Diagram();
+		metadata.setName("plain");
+		metadata.setType(DiagramType.Activity);
+		encoder.writeObject(new ArrayList<Diagram>(Collections.singletonList(metadata)));
+		encoder.close();
+		out.putNextEntry(new ZipEntry("index.xml"));
+		out.write(index.toByteArray());
+		out.closeEntry();
+		out.putNextEntry(new ZipEntry("diagrams/0/script.txt"));
+		out.write("(start)->(end)".getBytes("UTF-8"));
+		out.closeEntry();
+		out.putNextEntry(new ZipEntry("diagrams/0/render"));
+		out.write(SVG.getBytes("UTF-8"));
+		out.closeEntry();
+		out.close();
+
+		List<Diagram> read = ProjectArchive.read(file);
+		assertEquals("plain", read.get(0).getName());
+		assertEquals("(start)->(end)", read.get(0).getScript());
+		assertEquals(SVG, read.get(0).getEncodedImage());
+
+		// saving again converts the render to the current layout
+		File saved = new File(dir, "saved.jsz");
+		ProjectArchive.write(saved, ProjectArchive.read(file), UNCHANGED);
+		assertEquals(ZipEntry.STORED, entry(saved, "diagrams/0/render").getMethod());
+		assertEquals(SVG, ProjectArchive.read(saved).get(0).getEncodedImage());
+	}
+
+	public void testUnchangedRendersAreCopied() throws IOException {
+		File file = new File(dir, "original.jsz");
+		ProjectArchive.write(file, diagrams("first", "second"), UNCHANGED);
+		List<Diagram> read = ProjectArchive.read(file);
+
+		File copy = new File(dir, "copy.jsz");
+		ProjectArchive.write(copy, read, UNCHANGED);
+		ZipEntry original = entry(file, "diagrams/1/render");
+		ZipEntry copied = entry(copy, "diagrams/1/render");
+		assertEquals(original.getCrc(), copied.getCrc());
+		assertEquals(original.getSize(), copied.getSize());
+		// the renders were copied without being read, and are now read from the new file
+		assertFalse(read.get(1).hasEncodedImage());
+		file.delete();
+		assertEquals(SVG, read.get(1).getEncodedImage());
+	}
+
+	public void testSaveSurvivesRenderReplacedOnDisk() throws IOException {
+		File file = new File(dir, "project.jsz");
+		ProjectArchive.write(file, diagrams("first"), UNCHANGED);
+		List<Diagram> read = ProjectArchive.read(file);
+		// another save puts a different render under the same entry
+		List<Diagram> other = diagrams("other");
+		other.get(0).setEncodedImage(OTHER_SVG);
+		ProjectArchive.write(file, other, UNCHANGED);
+
+		File saved = new File(dir, "saved.jsz");
+		ProjectArchive.write(saved, read, UNCHANGED);
+		assertNull(entry(saved, "diagrams/0/render"));
+		assertEquals("[first]", ProjectArchive.read(saved).get(0).getScript());
+		assertNull(read.get(0).nonBeanEncodedImageSource());
+		assertTrue(read.get(0).nonBeanRefresh());
+	}
+
+	public void testSnapshotIgnoresLaterEdits() throws IOException {
+		List<Diagram> diagrams = diagrams("first");
+		ProjectArchive.Snapshot snapshot = ProjectArchive.snapshot(diagrams, UNCHANGED);
+		diagrams.get(0).setName("renamed");
+		diagrams.get(0).setScript("[renamed]");
+		diagrams.get(0).setEncodedImage(OTHER_SVG);
+
+		File file = new File(dir, "project.jsz");
+		ProjectArchive.write(file, snapshot);
+		Diagram read = ProjectArchive.read(file).get(0);
+		assertEquals("first", read.getName());
+		assertEquals("[first]", read.getScript());
+		assertEquals(SVG, read.getEncodedImage());
+	}
+
+	private static List<Diagram> diagrams(String... names) {
+		List<Diagram> diagrams = new ArrayList<Diagram>();
+		for (String name : names) {
+			Diagram diagram = new Diagram();
+			diagram.setName(name);
+			diagram.setType(DiagramType.Class);
+			diagram.setScript("[" + name + "]");
+			diagram.setEncodedImage(SVG);
+			diagrams.add(diagram);
+		}
+		return diagrams;
+	}
+
+	private static ZipEntry entry(File file, String name) throws IOException {
+		ZipFile zipFile = new ZipFile(file);
+		try {
+			return zipFile.getEntry(name);
+		} finally {
+			zipFile.close();
+		}
+	}
+
+}